@@ -1,4 +1,8 @@
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * Complete B-Tree Implementation in Java
@@ -15,6 +19,54 @@ import java.util.*;
  */
 public class BTree {
     
+    /**
+     * KeySearch locates a key inside one node's sorted keys array
+     * 
+     * All intra-node scans (search, findKey, insertNonFull, cursors) go
+     * through the tree's KeySearch, so the strategy can be picked per tree.
+     * LINEAR is the classic scan and wins for small nodes; BRANCH_FREE is a
+     * binary search whose loop has no data-dependent branch (the compare
+     * compiles to a conditional move), which pays off for large minDegree.
+     * VectorKeySearch (separate file, needs jdk.incubator.vector) counts
+     * matching lanes with SIMD compares.
+     */
+    public interface KeySearch {
+        /**
+         * @return index of the first key >= key in keys[0..numKeys), or numKeys if none
+         */
+        int lowerBound(int[] keys, int numKeys, int key);
+        
+        /**
+         * @return index of the first key > key in keys[0..numKeys), or numKeys if none
+         */
+        default int upperBound(int[] keys, int numKeys, int key) {
+            return key == Integer.MAX_VALUE ? numKeys : lowerBound(keys, numKeys, key + 1);
+        }
+        
+        KeySearch LINEAR = (keys, numKeys, key) -> {
+            int i = 0;
+            while (i < numKeys && keys[i] < key) {
+                i++;
+            }
+            return i;
+        };
+        
+        KeySearch BRANCH_FREE = (keys, numKeys, key) -> {
+            if (numKeys == 0) {
+                return 0;
+            }
+            // Answer stays in [base, base + len]; halve len without branching on the data
+            int base = 0;
+            int len = numKeys;
+            while (len > 1) {
+                int half = len >>> 1;
+                base = (keys[base + half] < key) ? base + half : base;
+                len -= half;
+            }
+            return base + ((keys[base] < key) ? 1 : 0);
+        };
+    }
+    
     /**
      * BTreeNode represents a single node in the B-tree
      */
@@ -24,6 +76,11 @@ public class BTree {
         int numKeys;          // Current number of keys in the node
         boolean isLeaf;       // True if node is a leaf, false otherwise
         int minDegree;        // Minimum degree of the tree
+        KeySearch keySearch;  // Intra-node search strategy shared by the whole tree
+        long gen;             // Write generation that owns this node (see BTree.snapshot)
+        NodePool pool;        // Where split/copy take nodes from and merge returns them (null = none)
+        int subtreeSize;      // Keys in the subtree rooted at this node (for rank/select)
+        BloomFilter bloom;    // Keys of this subtree, on nodes at the tree's Bloom height only
         
         /**
          * Constructor for BTreeNode
@@ -31,8 +88,16 @@ public class BTree {
          * @param isLeaf - whether this node is a leaf
          */
         public BTreeNode(int minDegree, boolean isLeaf) {
+            this(minDegree, isLeaf, KeySearch.LINEAR);
+        }
+        
+        /**
+         * Constructor for BTreeNode with an explicit intra-node search strategy
+         */
+        public BTreeNode(int minDegree, boolean isLeaf, KeySearch keySearch) {
             this.minDegree = minDegree;
             this.isLeaf = isLeaf;
+            this.keySearch = keySearch;
             
             // Maximum keys = 2*minDegree - 1
             this.keys = new int[2 * minDegree - 1];
@@ -43,6 +108,45 @@ public class BTree {
             this.numKeys = 0;
         }
         
+        /**
+         * New node of the same tree, recycled from the pool when possible
+         */
+        BTreeNode newNode(boolean isLeaf, long gen) {
+            BTreeNode node = (pool == null) ? new BTreeNode(minDegree, isLeaf, keySearch) : pool.acquire(isLeaf, keySearch);
+            node.gen = gen;
+            return node;
+        }
+        
+        /**
+         * Copy of this node owned by write generation gen (children are shared)
+         */
+        BTreeNode copy(long gen) {
+            BTreeNode copy = newNode(isLeaf, gen);
+            System.arraycopy(keys, 0, copy.keys, 0, numKeys);
+            if (!isLeaf) {
+                System.arraycopy(children, 0, copy.children, 0, numKeys + 1);
+            }
+            copy.numKeys = numKeys;
+            copy.subtreeSize = subtreeSize;
+            copy.bloom = (bloom == null) ? null : new BloomFilter(bloom);
+            return copy;
+        }
+        
+        /**
+         * Make children[i] safe to modify and return it
+         * A child from an older generation may be shared with a snapshot, so
+         * it is replaced by a private copy first. This node must already be
+         * writable (its gen is the tree's current generation).
+         */
+        private BTreeNode writableChild(int i) {
+            BTreeNode child = children[i];
+            if (child.gen != gen) {
+                child = child.copy(gen);
+                children[i] = child;
+            }
+            return child;
+        }
+        
         /**
          * Search for a key in the subtree rooted at this node
          * Time Complexity: O(log n)
@@ -51,12 +155,13 @@ public class BTree {
          * @return true if key is found, false otherwise
          */
         public boolean search(int key) {
-            int i = 0;
+            // A negative from the subtree's Bloom filter is definite: skip the levels below
+            if (bloom != null && !bloom.mightContain(key)) {
+                return false;
+            }
             
             // Find the first key greater than or equal to the search key
-            while (i < numKeys && key > keys[i]) {
-                i++;
-            }
+            int i = keySearch.lowerBound(keys, numKeys, key);
             
             // If key is found at index i
             if (i < numKeys && key == keys[i]) {
@@ -79,29 +184,23 @@ public class BTree {
          * @param key - key to insert
          */
         public void insertNonFull(int key) {
-            int i = numKeys - 1; // Start from the rightmost key
+            // Position just after the last key <= the new key
+            int i = keySearch.upperBound(keys, numKeys, key);
+            subtreeSize++;
             
             if (isLeaf) {
                 // If this is a leaf node, insert the key directly
                 
                 // Move all keys greater than the new key one position ahead
-                while (i >= 0 && keys[i] > key) {
-                    keys[i + 1] = keys[i];
-                    i--;
-                }
+                System.arraycopy(keys, i, keys, i + 1, numKeys - i);
                 
                 // Insert the new key at the found position
-                keys[i + 1] = key;
+                keys[i] = key;
                 numKeys++;
                 
             } else {
-                // If this is an internal node
-                
-                // Find the child that will have the new key
-                while (i >= 0 && keys[i] > key) {
-                    i--;
-                }
-                i++; // Move to the correct child index
+                // If this is an internal node, i is the child that will have the new key
+                writableChild(i);
                 
                 // Check if the found child is full
                 if (children[i].numKeys == 2 * minDegree - 1) {
@@ -117,11 +216,138 @@ public class BTree {
                 
                 // Recursively insert into the appropriate child
                 children[i].insertNonFull(key);
+                if (bloom != null) {
+                    bloomAdd(key);
+                }
+            }
+        }
+        
+        /**
+         * Rebuild this node's Bloom filter from its subtree, sized with 2x headroom
+         */
+        void buildBloom(int bitsPerKey) {
+            bloom = new BloomFilter(Math.max(2 * subtreeSize, 2 * minDegree), bitsPerKey);
+            bloomAddSubtree(this);
+        }
+        
+        /**
+         * Record a key that is now in this subtree; rebuilds once the filter is over capacity
+         */
+        private void bloomAdd(int key) {
+            if (bloom.added >= bloom.capacity) {
+                buildBloom(bloom.bitsPerKey);
+            } else {
+                bloom.add(key);
+            }
+        }
+        
+        private void bloomAddSubtree(BTreeNode node) {
+            for (int i = 0; i < node.numKeys; i++) {
+                bloomAdd(node.keys[i]);
+            }
+            if (!node.isLeaf) {
+                for (int i = 0; i <= node.numKeys; i++) {
+                    bloomAddSubtree(node.children[i]);
+                }
+            }
+        }
+        
+        /**
+         * Insert the sorted run sorted[from..to) into the subtree rooted at this node
+         * This node must be writable and not full. Each child is visited once
+         * per contiguous partition of the run instead of once per key. Stops
+         * early when this node fills up, since it could not take another
+         * child split; the caller splits it and calls again.
+         * 
+         * @param distinct - skip keys already in the tree or earlier in sorted
+         * @return index of the first key not handled yet
+         */
+        int insertBatch(int[] sorted, int from, int to, boolean distinct) {
+            int maxKeys = 2 * minDegree - 1;
+            
+            if (isLeaf) {
+                // Take as many keys as fit (in distinct mode, as many new keys)
+                int end = from + Math.min(to - from, maxKeys - numKeys);
+                int count = end - from;
+                if (distinct) {
+                    end = from;
+                    count = 0;
+                    int i = 0;
+                    while (end < to && count < maxKeys - numKeys) {
+                        int key = sorted[end++];
+                        while (i < numKeys && keys[i] < key) {
+                            i++;
+                        }
+                        if (!(i < numKeys && keys[i] == key) && !(end - 1 > 0 && sorted[end - 2] == key)) {
+                            count++;
+                        }
+                    }
+                }
+                
+                // Merge from the back so every existing key moves at most once
+                int i = numKeys - 1;
+                int k = numKeys + count - 1;
+                for (int j = end - 1; j >= from; j--) {
+                    int key = sorted[j];
+                    while (i >= 0 && keys[i] > key) {
+                        keys[k--] = keys[i--];
+                    }
+                    if (distinct && ((i >= 0 && keys[i] == key) || (j > 0 && sorted[j - 1] == key))) {
+                        continue;
+                    }
+                    keys[k--] = key;
+                }
+                numKeys += count;
+                subtreeSize += count;
+                return end;
+            }
+            
+            int start = from;
+            int added = 0;
+            while (from < to) {
+                int c = keySearch.upperBound(keys, numKeys, sorted[from]);
+                if (distinct && c > 0 && keys[c - 1] == sorted[from]) {
+                    from++; // already stored in this node
+                    continue;
+                }
+                BTreeNode child = writableChild(c);
+                if (child.numKeys == maxKeys) {
+                    if (numKeys == maxKeys) {
+                        break;
+                    }
+                    splitChild(c, child);
+                    continue;
+                }
+                
+                // Child c takes every key below separator c
+                int end = to;
+                if (c < numKeys) {
+                    int lo = from + 1;
+                    while (lo < end) {
+                        int mid = (lo + end) >>> 1;
+                        if (sorted[mid] < keys[c]) {
+                            lo = mid + 1;
+                        } else {
+                            end = mid;
+                        }
+                    }
+                }
+                int before = child.subtreeSize;
+                from = child.insertBatch(sorted, from, end, distinct);
+                added += child.subtreeSize - before;
+            }
+            subtreeSize += added;
+            if (bloom != null) {
+                for (int j = start; j < from; j++) {
+                    bloomAdd(sorted[j]);
+                }
             }
+            return from;
         }
         
         /**
          * Split a full child of this node
+         * Both this node and fullChild must be writable.
          * 
          * @param index - index of the child to split
          * @param fullChild - the full child node to split
@@ -130,7 +356,7 @@ public class BTree {
             int t = minDegree;
             
             // Create a new node to store (t-1) keys of fullChild
-            BTreeNode newChild = new BTreeNode(t, fullChild.isLeaf);
+            BTreeNode newChild = newNode(fullChild.isLeaf, gen);
             newChild.numKeys = t - 1;
             
             // Copy the last (t-1) keys of fullChild to newChild
@@ -139,14 +365,17 @@ public class BTree {
             }
             
             // Copy the last t children of fullChild to newChild
+            newChild.subtreeSize = t - 1;
             if (!fullChild.isLeaf) {
                 for (int j = 0; j < t; j++) {
                     newChild.children[j] = fullChild.children[j + t];
+                    newChild.subtreeSize += newChild.children[j].subtreeSize;
                 }
             }
             
-            // Reduce the number of keys in fullChild
+            // Reduce the number of keys in fullChild (the middle key moves up)
             fullChild.numKeys = t - 1;
+            fullChild.subtreeSize -= newChild.subtreeSize + 1;
             
             // Move children of current node one step ahead
             for (int j = numKeys; j >= index + 1; j--) {
@@ -166,14 +395,32 @@ public class BTree {
             
             // Increment count of keys in this node
             numKeys++;
+            
+            // Both halves cover different keys now
+            if (fullChild.bloom != null) {
+                int bitsPerKey = fullChild.bloom.bitsPerKey;
+                fullChild.buildBloom(bitsPerKey);
+                newChild.buildBloom(bitsPerKey);
+            }
         }
         
         /**
          * Delete a key from the subtree rooted at this node
          * 
          * @param key - key to delete
+         * @return true if the key was found and removed
+         */
+        public boolean delete(int key) {
+            return delete(key, new Rebalancing(minDegree - 1));
+        }
+        
+        /**
+         * Delete a key, letting nodes shrink down to rebalancing.minKeys keys
+         * Every child is topped up to minKeys+1 keys before the descent enters
+         * it, so removing one key below never leaves it under minKeys. With
+         * minKeys = minDegree-1 this is the classic eager B-tree delete.
          */
-        public void delete(int key) {
+        boolean delete(int key, Rebalancing rebalancing) {
             int idx = findKey(key);
             
             if (idx < numKeys && keys[idx] == key) {
@@ -181,41 +428,58 @@ public class BTree {
                 if (isLeaf) {
                     removeFromLeaf(idx);
                 } else {
-                    removeFromNonLeaf(idx);
+                    removeFromNonLeaf(idx, rebalancing);
                 }
+                subtreeSize--;
+                return true;
             } else {
                 // Key is not present in this node
                 if (isLeaf) {
                     // Key is not in the tree
-                    return;
+                    return false;
                 }
                 
                 // Flag to check if key is in the subtree rooted at last child
                 boolean flag = (idx == numKeys);
                 
-                // Fix child if it has too few keys
-                if (children[idx].numKeys < minDegree) {
-                    fill(idx);
+                // Fix child if it has too few keys (a relaxed node left with no keys has no sibling to use)
+                if (children[idx].numKeys <= rebalancing.minKeys && numKeys > 0) {
+                    fill(idx, rebalancing.minKeys, rebalancing);
                 }
                 
                 // If key was in the last child and we merged it with previous child
+                boolean deleted;
                 if (flag && idx > numKeys) {
-                    children[idx - 1].delete(key);
+                    deleted = deleteFromChild(idx - 1, key, rebalancing);
                 } else {
-                    children[idx].delete(key);
+                    deleted = deleteFromChild(idx, key, rebalancing);
                 }
+                if (deleted) {
+                    subtreeSize--;
+                }
+                return deleted;
+            }
+        }
+        
+        /**
+         * Delete key from the subtree of child c, counting the merge an eager delete would have made
+         */
+        private boolean deleteFromChild(int c, int key, Rebalancing rebalancing) {
+            BTreeNode child = writableChild(c);
+            int before = child.numKeys;
+            boolean deleted = child.delete(key, rebalancing);
+            // The eager delete never lets a child fall below minDegree-1 keys
+            if (before == minDegree - 1 && child.numKeys < before && wouldMerge(c)) {
+                rebalancing.mergesAvoided++;
             }
+            return deleted;
         }
         
         /**
          * Find the index of the first key that is greater than or equal to key
          */
         private int findKey(int key) {
-            int idx = 0;
-            while (idx < numKeys && keys[idx] < key) {
-                idx++;
-            }
-            return idx;
+            return keySearch.lowerBound(keys, numKeys, key);
         }
         
         /**
@@ -232,37 +496,45 @@ public class BTree {
         /**
          * Remove key from non-leaf node at given index
          */
-        private void removeFromNonLeaf(int idx) {
+        private void removeFromNonLeaf(int idx, Rebalancing rebalancing) {
             int key = keys[idx];
+            int minKeys = rebalancing.minKeys;
             
-            // Case 1: Left child has at least minDegree keys
-            if (children[idx].numKeys >= minDegree) {
+            // Case 1: Left child has more than minKeys keys
+            if (children[idx].numKeys > minKeys) {
                 int pred = getPredecessor(idx);
                 keys[idx] = pred;
-                children[idx].delete(pred);
+                deleteFromChild(idx, pred, rebalancing);
             }
-            // Case 2: Right child has at least minDegree keys
-            else if (children[idx + 1].numKeys >= minDegree) {
+            // Case 2: Right child has more than minKeys keys
+            else if (children[idx + 1].numKeys > minKeys) {
                 int succ = getSuccessor(idx);
                 keys[idx] = succ;
-                children[idx + 1].delete(succ);
+                deleteFromChild(idx + 1, succ, rebalancing);
             }
-            // Case 3: Both children have minDegree-1 keys
+            // Case 3: Both children have minKeys keys or fewer
             else {
                 merge(idx);
-                children[idx].delete(key);
+                rebalancing.merges++;
+                writableChild(idx).delete(key, rebalancing);
             }
         }
         
         /**
          * Get predecessor of key at index idx
+         * Under relaxed deletion a leaf may be empty; the last key met on the
+         * rightmost path is then the largest key of the subtree.
          */
         private int getPredecessor(int idx) {
             BTreeNode cur = children[idx];
+            int pred = cur.keys[cur.numKeys - 1];
             while (!cur.isLeaf) {
                 cur = cur.children[cur.numKeys];
+                if (cur.numKeys > 0) {
+                    pred = cur.keys[cur.numKeys - 1];
+                }
             }
-            return cur.keys[cur.numKeys - 1];
+            return pred;
         }
         
         /**
@@ -270,22 +542,28 @@ public class BTree {
          */
         private int getSuccessor(int idx) {
             BTreeNode cur = children[idx + 1];
+            int succ = cur.keys[0];
             while (!cur.isLeaf) {
                 cur = cur.children[0];
+                if (cur.numKeys > 0) {
+                    succ = cur.keys[0];
+                }
             }
-            return cur.keys[0];
+            return succ;
         }
         
         /**
-         * Fill child at index idx which has fewer than minDegree-1 keys
+         * Fill child at index idx, which has minKeys keys or fewer, from a sibling
+         * Borrows one key from a sibling with more than minKeys keys, or else
+         * merges with a sibling (the result has at most 2*minKeys+1 keys).
          */
-        private void fill(int idx) {
-            // If previous sibling has more than minDegree-1 keys, borrow from it
-            if (idx != 0 && children[idx - 1].numKeys >= minDegree) {
+        private void fill(int idx, int minKeys, Rebalancing rebalancing) {
+            // If previous sibling has more than minKeys keys, borrow from it
+            if (idx != 0 && children[idx - 1].numKeys > minKeys) {
                 borrowFromPrev(idx);
             }
-            // If next sibling has more than minDegree-1 keys, borrow from it
-            else if (idx != numKeys && children[idx + 1].numKeys >= minDegree) {
+            // If next sibling has more than minKeys keys, borrow from it
+            else if (idx != numKeys && children[idx + 1].numKeys > minKeys) {
                 borrowFromNext(idx);
             }
             // Merge with sibling
@@ -295,15 +573,76 @@ public class BTree {
                 } else {
                     merge(idx - 1);
                 }
+                rebalancing.merges++;
+            }
+        }
+        
+        /**
+         * Would the eager delete have to merge child idx (no sibling with a key to spare)?
+         */
+        private boolean wouldMerge(int idx) {
+            return !(idx != 0 && children[idx - 1].numKeys >= minDegree)
+                && !(idx != numKeys && children[idx + 1].numKeys >= minDegree);
+        }
+        
+        /**
+         * Restore the classic minimum of minDegree-1 keys in every node below this one
+         * This node must be writable. Works top-down: the children are topped
+         * up first, so each of them has keys to borrow and merge with when
+         * its own children are fixed. A sparse child can use up its keys on
+         * those merges, so this repeats until all children are full enough;
+         * every repeat follows a merge, so it ends. Only paths leading to
+         * under-full nodes are made writable.
+         * 
+         * @return number of borrows and merges performed
+         */
+        int compact(Rebalancing rebalancing) {
+            int minKeys = minDegree - 1;
+            int fixes = 0;
+            boolean underfull = true;
+            while (underfull && numKeys > 0) {
+                int i = 0;
+                while (i <= numKeys && numKeys > 0) {
+                    if (children[i].numKeys < minKeys) {
+                        fill(i, minKeys, rebalancing);
+                        fixes++;
+                        i = Math.min(i, numKeys); // merge(i - 1) moves the child one slot left
+                    } else {
+                        i++;
+                    }
+                }
+                underfull = false;
+                for (i = 0; i <= numKeys; i++) {
+                    if (children[i].hasUnderfull(minKeys)) {
+                        fixes += writableChild(i).compact(rebalancing);
+                        underfull |= children[i].numKeys < minKeys;
+                    }
+                }
+            }
+            return fixes;
+        }
+        
+        /**
+         * Does any node below this one have fewer than minKeys keys?
+         */
+        boolean hasUnderfull(int minKeys) {
+            if (isLeaf) {
+                return false;
+            }
+            for (int i = 0; i <= numKeys; i++) {
+                if (children[i].numKeys < minKeys || children[i].hasUnderfull(minKeys)) {
+                    return true;
+                }
             }
+            return false;
         }
         
         /**
          * Borrow a key from previous sibling
          */
         private void borrowFromPrev(int idx) {
-            BTreeNode child = children[idx];
-            BTreeNode sibling = children[idx - 1];
+            BTreeNode child = writableChild(idx);
+            BTreeNode sibling = writableChild(idx - 1);
             
             // Move all keys in child one step ahead
             for (int i = child.numKeys - 1; i >= 0; i--) {
@@ -321,8 +660,10 @@ public class BTree {
             child.keys[0] = keys[idx - 1];
             
             // Move child pointer from sibling to child
+            int moved = 1;
             if (!child.isLeaf) {
                 child.children[0] = sibling.children[sibling.numKeys];
+                moved += child.children[0].subtreeSize;
             }
             
             // Move key from sibling to parent
@@ -330,21 +671,33 @@ public class BTree {
             
             child.numKeys++;
             sibling.numKeys--;
+            child.subtreeSize += moved;
+            sibling.subtreeSize -= moved;
+            
+            // The child gained the old separator and the sibling's last subtree
+            if (child.bloom != null) {
+                child.bloomAdd(child.keys[0]);
+                if (!child.isLeaf) {
+                    child.bloomAddSubtree(child.children[0]);
+                }
+            }
         }
         
         /**
          * Borrow a key from next sibling
          */
         private void borrowFromNext(int idx) {
-            BTreeNode child = children[idx];
-            BTreeNode sibling = children[idx + 1];
+            BTreeNode child = writableChild(idx);
+            BTreeNode sibling = writableChild(idx + 1);
             
             // Move key from parent to child
             child.keys[child.numKeys] = keys[idx];
             
             // Move child pointer from sibling to child
+            int moved = 1;
             if (!child.isLeaf) {
                 child.children[child.numKeys + 1] = sibling.children[0];
+                moved += sibling.children[0].subtreeSize;
             }
             
             // Move key from sibling to parent
@@ -364,27 +717,39 @@ public class BTree {
             
             child.numKeys++;
             sibling.numKeys--;
+            child.subtreeSize += moved;
+            sibling.subtreeSize -= moved;
+            
+            // The child gained the old separator and the sibling's first subtree
+            if (child.bloom != null) {
+                child.bloomAdd(child.keys[child.numKeys - 1]);
+                if (!child.isLeaf) {
+                    child.bloomAddSubtree(child.children[child.numKeys]);
+                }
+            }
         }
         
         /**
          * Merge child at idx with its sibling
          */
         private void merge(int idx) {
-            BTreeNode child = children[idx];
-            BTreeNode sibling = children[idx + 1];
+            BTreeNode child = writableChild(idx);
+            BTreeNode sibling = children[idx + 1]; // only read, so it may stay shared
             
             // Pull key from current node and merge with right sibling
-            child.keys[minDegree - 1] = keys[idx];
+            // (the child has minDegree-1 keys on eager deletes, possibly fewer on relaxed ones)
+            int base = child.numKeys;
+            child.keys[base] = keys[idx];
             
             // Copy keys from sibling to child
             for (int i = 0; i < sibling.numKeys; i++) {
-                child.keys[i + minDegree] = sibling.keys[i];
+                child.keys[i + base + 1] = sibling.keys[i];
             }
             
             // Copy children from sibling to child
             if (!child.isLeaf) {
                 for (int i = 0; i <= sibling.numKeys; i++) {
-                    child.children[i + minDegree] = sibling.children[i];
+                    child.children[i + base + 1] = sibling.children[i];
                 }
             }
             
@@ -399,7 +764,16 @@ public class BTree {
             }
             
             child.numKeys += sibling.numKeys + 1;
+            child.subtreeSize += sibling.subtreeSize + 1;
             numKeys--;
+            if (child.bloom != null) {
+                child.buildBloom(child.bloom.bitsPerKey);
+            }
+            
+            // The sibling is unreachable now; recycle it unless a snapshot may still share it
+            if (pool != null && sibling.gen == gen) {
+                pool.release(sibling);
+            }
         }
         
         /**
@@ -422,17 +796,369 @@ public class BTree {
         }
     }
     
+    /**
+     * BloomFilter is a blocked Bloom filter over the keys of one subtree
+     * All probes for a key land in one 512-bit block (a single cache line),
+     * so a check costs at most one cache miss however many bits it tests.
+     * Deleted keys stay in the filter until the next rebuild; that only
+     * costs extra positives, never a wrong negative.
+     */
+    static final class BloomFilter {
+        private static final int BLOCK_BITS = 512;
+        final int bitsPerKey;
+        final int capacity; // keys it was sized for
+        int added;          // keys added since it was built
+        private final long[] words;
+        private final int blocks;
+        private final int probes;
+        
+        BloomFilter(int capacity, int bitsPerKey) {
+            this.bitsPerKey = bitsPerKey;
+            this.capacity = capacity;
+            this.blocks = (int) Math.max(1, ((long) capacity * bitsPerKey + BLOCK_BITS - 1) / BLOCK_BITS);
+            this.words = new long[blocks * (BLOCK_BITS / 64)];
+            // ln 2 * bits/key probes is optimal; 9-bit probe offsets from one 64-bit hash allow 7
+            this.probes = Math.max(1, Math.min(7, (int) Math.round(bitsPerKey * 0.69)));
+        }
+        
+        BloomFilter(BloomFilter other) {
+            this.bitsPerKey = other.bitsPerKey;
+            this.capacity = other.capacity;
+            this.added = other.added;
+            this.words = other.words.clone();
+            this.blocks = other.blocks;
+            this.probes = other.probes;
+        }
+        
+        private static long hash(int key) {
+            long h = (key & 0xFFFFFFFFL) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 32;
+            h *= 0xD6E8FEB86659FD93L;
+            return h ^ (h >>> 32);
+        }
+        
+        void add(int key) {
+            long h = hash(key);
+            int base = (int) (((h >>> 32) * blocks) >>> 32) * (BLOCK_BITS / 64);
+            long bits = h * 0xC2B2AE3D27D4EB4FL;
+            for (int i = 0; i < probes; i++, bits >>>= 9) {
+                int bit = (int) bits & (BLOCK_BITS - 1);
+                words[base + (bit >>> 6)] |= 1L << bit;
+            }
+            added++;
+        }
+        
+        boolean mightContain(int key) {
+            long h = hash(key);
+            int base = (int) (((h >>> 32) * blocks) >>> 32) * (BLOCK_BITS / 64);
+            long bits = h * 0xC2B2AE3D27D4EB4FL;
+            for (int i = 0; i < probes; i++, bits >>>= 9) {
+                int bit = (int) bits & (BLOCK_BITS - 1);
+                if ((words[base + (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * NodePool is a bounded free list of nodes for one tree
+     * 
+     * Nodes dropped by merge and by root collapse in delete are kept here
+     * and handed back out by splitChild and copy-on-write, so a tree that
+     * stays around the same size stops allocating nodes. Only nodes of the
+     * current write generation are recycled: older ones may still be
+     * referenced by a snapshot. Not thread-safe, like BTree itself.
+     */
+    public static class NodePool {
+        private final int minDegree;
+        private final BTreeNode[] free;
+        private int size;
+        private long hits;     // acquires served from the pool
+        private long misses;   // acquires that had to allocate
+        private long dropped;  // releases ignored because the pool was full
+        
+        /**
+         * @param minDegree - minimum degree of the tree the pool serves
+         * @param maxNodes - most nodes kept at once; the rest are left to the GC
+         */
+        public NodePool(int minDegree, int maxNodes) {
+            this.minDegree = minDegree;
+            this.free = new BTreeNode[maxNodes];
+        }
+        
+        BTreeNode acquire(boolean isLeaf, KeySearch keySearch) {
+            if (size == 0) {
+                misses++;
+                BTreeNode node = new BTreeNode(minDegree, isLeaf, keySearch);
+                node.pool = this;
+                return node;
+            }
+            hits++;
+            BTreeNode node = free[--size];
+            free[size] = null;
+            node.isLeaf = isLeaf;
+            node.keySearch = keySearch;
+            node.numKeys = 0;
+            node.subtreeSize = 0;
+            node.bloom = null;
+            return node;
+        }
+        
+        void release(BTreeNode node) {
+            if (size == free.length) {
+                dropped++;
+                return;
+            }
+            // Clear child links so a pooled node does not keep subtrees alive
+            Arrays.fill(node.children, null);
+            free[size++] = node;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        public long hits() {
+            return hits;
+        }
+        
+        public long misses() {
+            return misses;
+        }
+        
+        public long dropped() {
+            return dropped;
+        }
+    }
+    
+    /**
+     * Rebalancing holds how far deletes may let nodes shrink, and what that saved
+     * minKeys = minDegree-1 is the classic eager delete. Lower values let
+     * nodes run under-full, so a key deleted and soon re-inserted does not
+     * cost a merge followed by a split; BTree.compact restores the classic
+     * shape later.
+     */
+    static class Rebalancing {
+        int minKeys;        // Non-root nodes keep at least this many keys after a delete
+        long merges;        // Merges performed by deletes and compaction
+        long mergesAvoided; // Nodes left below minDegree-1 keys where the eager rule would have merged
+        
+        Rebalancing(int minKeys) {
+            this.minKeys = minKeys;
+        }
+    }
+    
+    // Batches at least this large are sorted with Arrays.parallelSort
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+    
     // Root of the B-tree
     private BTreeNode root;
     private int minDegree; // Minimum degree
+    private KeySearch keySearch; // Intra-node search strategy for every node
+    private long gen; // Current write generation; nodes from older ones may be shared with snapshots
+    private NodePool pool; // Optional node recycling (null = allocate every node)
+    private int bloomHeight; // Height (leaves = 0) of the nodes that carry Bloom filters
+    private int bloomBitsPerKey; // 0 = no Bloom filters
+    private Rebalancing rebalancing; // Delete under-fill threshold and merge counters
     
     /**
      * Constructor for B-tree
      * @param minDegree - minimum degree of the tree
      */
     public BTree(int minDegree) {
+        this(minDegree, KeySearch.LINEAR);
+    }
+    
+    /**
+     * Constructor for B-tree with an explicit intra-node search strategy
+     * @param minDegree - minimum degree of the tree
+     * @param keySearch - how keys are located inside a node
+     */
+    public BTree(int minDegree, KeySearch keySearch) {
         this.minDegree = minDegree;
+        this.keySearch = keySearch;
         this.root = null;
+        this.rebalancing = new Rebalancing(minDegree - 1);
+    }
+    
+    /**
+     * Switch the intra-node search strategy of an existing tree (e.g. after bulkLoad)
+     * Visits every node once. Nodes shared with snapshots switch too, which
+     * changes how they search but never what they find.
+     */
+    public void setKeySearch(KeySearch keySearch) {
+        this.keySearch = keySearch;
+        forEachNode(node -> node.keySearch = keySearch);
+    }
+    
+    /**
+     * Recycle nodes through pool from now on (null turns recycling off)
+     * Visits every node once.
+     */
+    public void setNodePool(NodePool pool) {
+        if (pool != null && pool.minDegree != minDegree) {
+            throw new IllegalArgumentException("Pool minDegree " + pool.minDegree + " does not match tree minDegree " + minDegree);
+        }
+        this.pool = pool;
+        forEachNode(node -> node.pool = pool);
+    }
+    
+    /**
+     * Let deletes leave nodes with as few as minKeys keys (0 allows empty nodes)
+     * 
+     * The eager delete merges a node as soon as it would drop below
+     * minDegree-1 keys, and a later insert into the same range splits it
+     * again. Relaxed deletes only rebalance below minKeys; searches, scans
+     * and order statistics work unchanged on the sparser tree. Call compact
+     * when the tree is idle to restore the classic shape.
+     * 
+     * @param minKeys - between 0 and minDegree-1 (minDegree-1 = eager, the default)
+     */
+    public void setRelaxedDelete(int minKeys) {
+        if (minKeys < 0 || minKeys > minDegree - 1) {
+            throw new IllegalArgumentException("minKeys must be between 0 and " + (minDegree - 1));
+        }
+        rebalancing.minKeys = minKeys;
+    }
+    
+    /**
+     * Deferred rebalancing: bring every node back to at least minDegree-1 keys
+     * Only the paths to under-full nodes are visited for writing (and copied
+     * if a snapshot shares them), so this is cheap when few nodes are sparse.
+     * Not thread-safe; run it between writes, e.g. from a maintenance task
+     * holding the same lock as the writers.
+     * 
+     * @return number of borrows and merges performed
+     */
+    public int compact() {
+        int fixes = 0;
+        // A pass can end with an empty root over an under-full child; the next pass starts one level lower
+        while (root != null && root.hasUnderfull(minDegree - 1)) {
+            writableRoot();
+            fixes += root.compact(rebalancing);
+            collapseRoot();
+        }
+        return fixes;
+    }
+    
+    /**
+     * Merges performed so far by deletes and compaction
+     */
+    public long merges() {
+        return rebalancing.merges;
+    }
+    
+    /**
+     * Times a delete left a node below minDegree-1 keys where the eager delete would have merged it
+     */
+    public long mergesAvoided() {
+        return rebalancing.mergesAvoided;
+    }
+    
+    /**
+     * Keep a Bloom filter over the keys of every subtree rooted at the given height
+     * 
+     * search then checks one filter on its way down (when it reaches that
+     * height) and stops on a definite miss instead of visiting the height
+     * levels below. Filters are sized from the subtree's key count with 2x
+     * headroom, rebuilt on splitChild, merge and when they outgrow that, and
+     * updated on insert and borrow. Memory is about 2 * bitsPerKey bits per
+     * key. Like setKeySearch, this also touches nodes shared with snapshots,
+     * so do not call it while a snapshot is being read on another thread.
+     * 
+     * @param height - height of the filtered subtrees (1 = parents of leaves)
+     * @param bitsPerKey - filter bits per key (about 10 gives 1% false positives); 0 removes all filters
+     */
+    public void setBloomFilters(int height, int bitsPerKey) {
+        if (height < 1 || bitsPerKey < 0) {
+            throw new IllegalArgumentException("height must be >= 1 and bitsPerKey >= 0");
+        }
+        this.bloomHeight = height;
+        this.bloomBitsPerKey = bitsPerKey;
+        if (root != null) {
+            assignBloom(root);
+        }
+    }
+    
+    private int assignBloom(BTreeNode node) {
+        int height = 0;
+        if (!node.isLeaf) {
+            for (int i = 0; i <= node.numKeys; i++) {
+                height = assignBloom(node.children[i]) + 1;
+            }
+        }
+        if (bloomBitsPerKey > 0 && height == bloomHeight) {
+            node.buildBloom(bloomBitsPerKey);
+        } else {
+            node.bloom = null;
+        }
+        return height;
+    }
+    
+    /**
+     * Give a new root a Bloom filter if it sits at the filtered height
+     */
+    private void bloomNewRoot() {
+        if (bloomBitsPerKey == 0) {
+            return;
+        }
+        int height = 0;
+        for (BTreeNode node = root; !node.isLeaf; node = node.children[0]) {
+            height++;
+        }
+        if (height == bloomHeight) {
+            root.buildBloom(bloomBitsPerKey);
+        }
+    }
+    
+    /**
+     * Fraction of the given absent keys that pass the Bloom filter of their subtree
+     * Keys that never reach a filtered node are not counted; if none does
+     * (filters off, tree shorter than the filter height, or no keys), returns 0.
+     */
+    public double bloomFalsePositiveRate(int[] absentKeys) {
+        long checked = 0;
+        long passed = 0;
+        for (int key : absentKeys) {
+            BTreeNode node = root;
+            while (node != null && node.bloom == null) {
+                node = node.isLeaf ? null : node.children[node.keySearch.lowerBound(node.keys, node.numKeys, key)];
+            }
+            if (node != null) {
+                checked++;
+                if (node.bloom.mightContain(key)) {
+                    passed++;
+                }
+            }
+        }
+        return (checked == 0) ? 0 : (double) passed / checked;
+    }
+    
+    private void forEachNode(Consumer<BTreeNode> action) {
+        if (root != null) {
+            Deque<BTreeNode> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                BTreeNode node = stack.pop();
+                action.accept(node);
+                if (!node.isLeaf) {
+                    for (int i = 0; i <= node.numKeys; i++) {
+                        stack.push(node.children[i]);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * New node of this tree, recycled from the pool when possible
+     */
+    private BTreeNode newNode(boolean isLeaf) {
+        BTreeNode node = (pool == null) ? new BTreeNode(minDegree, isLeaf, keySearch) : pool.acquire(isLeaf, keySearch);
+        node.gen = gen;
+        return node;
     }
     
     /**
@@ -451,14 +1177,18 @@ public class BTree {
     public void insert(int key) {
         if (root == null) {
             // Create root for empty tree
-            root = new BTreeNode(minDegree, true);
+            root = newNode(true);
             root.keys[0] = key;
             root.numKeys = 1;
+            root.subtreeSize = 1;
         } else {
+            writableRoot();
+            
             // Check if root is full
             if (root.numKeys == 2 * minDegree - 1) {
                 // Create new root
-                BTreeNode newRoot = new BTreeNode(minDegree, false);
+                BTreeNode newRoot = newNode(false);
+                newRoot.subtreeSize = root.subtreeSize + 1; // old keys plus the one inserted below
                 
                 // Make old root as child of new root
                 newRoot.children[0] = root;
@@ -475,6 +1205,7 @@ public class BTree {
                 
                 // Change root
                 root = newRoot;
+                bloomNewRoot();
             } else {
                 // Insert into non-full root
                 root.insertNonFull(key);
@@ -483,7 +1214,56 @@ public class BTree {
     }
     
     /**
-     * Delete a key from the B-tree
+     * Insert a batch of keys in any order
+     * The batch is sorted (in parallel when large) and pushed down the tree
+     * as sorted runs, so each node on the way is visited once per run that
+     * passes through it rather than once per key.
+     * 
+     * @param keys - keys to insert; the array is not modified
+     */
+    public void insertAll(int[] keys) {
+        insertAll(keys, false);
+    }
+    
+    /**
+     * Like insertAll, but skips keys that are already in the tree or repeated in the batch
+     * Gives set semantics without a search per key.
+     */
+    public void insertAllDistinct(int[] keys) {
+        insertAll(keys, true);
+    }
+    
+    private void insertAll(int[] keys, boolean distinct) {
+        if (keys.length == 0) {
+            return;
+        }
+        int[] sorted = keys.clone();
+        if (sorted.length >= PARALLEL_SORT_THRESHOLD) {
+            Arrays.parallelSort(sorted);
+        } else {
+            Arrays.sort(sorted);
+        }
+        
+        if (root == null) {
+            root = newNode(true);
+        }
+        int from = 0;
+        while (from < sorted.length) {
+            writableRoot();
+            if (root.numKeys == 2 * minDegree - 1) {
+                BTreeNode newRoot = newNode(false);
+                newRoot.subtreeSize = root.subtreeSize;
+                newRoot.children[0] = root;
+                newRoot.splitChild(0, root);
+                root = newRoot;
+                bloomNewRoot();
+            }
+            from = root.insertBatch(sorted, from, sorted.length, distinct);
+        }
+    }
+    
+    /**
+     * Delete a key from the B-tree
      * @param key - key to delete
      */
     public void delete(int key) {
@@ -491,15 +1271,32 @@ public class BTree {
             return;
         }
         
-        root.delete(key);
-        
-        // If root has 0 keys, make its first child the new root
-        if (root.numKeys == 0) {
+        writableRoot();
+        root.delete(key, rebalancing);
+        collapseRoot();
+    }
+    
+    private void collapseRoot() {
+        // If root has 0 keys, make its first child the new root (relaxed deletes may leave several such levels)
+        while (root != null && root.numKeys == 0) {
+            BTreeNode oldRoot = root;
             if (root.isLeaf) {
                 root = null;
             } else {
                 root = root.children[0];
             }
+            if (pool != null && oldRoot.gen == gen) {
+                pool.release(oldRoot);
+            }
+        }
+    }
+    
+    /**
+     * Copy the root if a snapshot may share it; writes then copy down the path they touch
+     */
+    private void writableRoot() {
+        if (root.gen != gen) {
+            root = root.copy(gen);
         }
     }
     
@@ -513,6 +1310,596 @@ public class BTree {
         System.out.println();
     }
     
+    /**
+     * Number of keys in the tree, counting duplicates
+     */
+    public int size() {
+        return (root == null) ? 0 : root.subtreeSize;
+    }
+    
+    /**
+     * Number of keys strictly less than key; O(t log n) using subtree sizes
+     */
+    public int rank(int key) {
+        return countBelow(root, key, false);
+    }
+    
+    /**
+     * The k-th smallest key, counting from 0; O(t log n) using subtree sizes
+     */
+    public int select(int k) {
+        return select(root, k);
+    }
+    
+    /**
+     * Number of keys k with lo <= k <= hi
+     */
+    public int countRange(int lo, int hi) {
+        return countRange(root, lo, hi);
+    }
+    
+    /**
+     * Count keys below key (or at most key when inclusive) in one root-to-leaf walk
+     * At each node, everything left of the descent position is added:
+     * the keys there plus the sizes of the subtrees between them.
+     */
+    private static int countBelow(BTreeNode node, int key, boolean inclusive) {
+        int count = 0;
+        while (node != null) {
+            int i = inclusive ? node.keySearch.upperBound(node.keys, node.numKeys, key)
+                              : node.keySearch.lowerBound(node.keys, node.numKeys, key);
+            count += i;
+            if (node.isLeaf) {
+                break;
+            }
+            for (int j = 0; j < i; j++) {
+                count += node.children[j].subtreeSize;
+            }
+            node = node.children[i];
+        }
+        return count;
+    }
+    
+    private static int countRange(BTreeNode root, int lo, int hi) {
+        return (lo > hi) ? 0 : countBelow(root, hi, true) - countBelow(root, lo, false);
+    }
+    
+    private static int select(BTreeNode node, int k) {
+        if (node == null || k < 0 || k >= node.subtreeSize) {
+            throw new IndexOutOfBoundsException("k = " + k + ", size = " + (node == null ? 0 : node.subtreeSize));
+        }
+        while (!node.isLeaf) {
+            int i = 0;
+            while (k >= node.children[i].subtreeSize + 1) {
+                k -= node.children[i].subtreeSize + 1;
+                i++;
+            }
+            if (k == node.children[i].subtreeSize) {
+                return node.keys[i];
+            }
+            node = node.children[i];
+        }
+        return node.keys[k];
+    }
+    
+    /**
+     * Build an immutable, pointer-free flat copy of the current keys for read-only phases
+     * See FrozenBTree; later changes to this tree do not affect it.
+     */
+    public FrozenBTree freeze() {
+        return new FrozenBTree(stream(Integer.MIN_VALUE, Integer.MAX_VALUE).toArray());
+    }
+    
+    /**
+     * Take a point-in-time snapshot in O(1)
+     * 
+     * The snapshot shares every node with the tree. Taking it bumps the
+     * write generation, so later inserts and deletes copy each older node
+     * on their path before changing it (path copying) and the snapshot never
+     * sees them. Each write copies at most O(height) nodes, and only the first
+     * time it touches a node after a snapshot. Old nodes are reclaimed by the
+     * GC once no snapshot references them.
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot(root);
+        gen++;
+        return snapshot;
+    }
+    
+    /**
+     * Snapshot is an immutable view of the tree as of BTree.snapshot()
+     * Its nodes are never modified again, so it can be searched and scanned
+     * from other threads while the tree keeps changing (publish it safely,
+     * e.g. through a concurrent queue or a volatile field).
+     */
+    public static class Snapshot {
+        private final BTreeNode root;
+        
+        Snapshot(BTreeNode root) {
+            this.root = root;
+        }
+        
+        public boolean search(int key) {
+            return (root == null) ? false : root.search(key);
+        }
+        
+        public Cursor cursor(int lo, int hi) {
+            return new Cursor(root, lo, hi, false);
+        }
+        
+        public Cursor cursor(int lo, int hi, boolean descending) {
+            return new Cursor(root, lo, hi, descending);
+        }
+        
+        public Spliterator.OfInt spliterator(int lo, int hi) {
+            return new RangeSpliterator(root, lo, hi);
+        }
+        
+        public IntStream stream(int lo, int hi) {
+            return StreamSupport.intStream(spliterator(lo, hi), false);
+        }
+        
+        public int size() {
+            return (root == null) ? 0 : root.subtreeSize;
+        }
+        
+        public int rank(int key) {
+            return countBelow(root, key, false);
+        }
+        
+        public int select(int k) {
+            return BTree.select(root, k);
+        }
+        
+        public int countRange(int lo, int hi) {
+            return BTree.countRange(root, lo, hi);
+        }
+    }
+    
+    /**
+     * Build a B-tree bottom-up from keys in non-decreasing order
+     * Leaves are packed left to right and every internal level is built in
+     * the same pass, so loading n keys is O(n) instead of n root-to-leaf
+     * descents with splits.
+     * 
+     * @param minDegree - minimum degree of the tree
+     * @param sorted - keys in non-decreasing order
+     * @param fillFactor - target fraction (0, 1] of the 2t-1 key slots to fill per node;
+     *                     leave headroom (e.g. 0.7) if many inserts will follow
+     * @return the loaded tree
+     */
+    public static BTree bulkLoad(int minDegree, int[] sorted, double fillFactor) {
+        BulkLoader loader = new BulkLoader(minDegree, fillFactor);
+        for (int key : sorted) {
+            loader.add(key);
+        }
+        return loader.finish();
+    }
+    
+    /**
+     * Streaming variant of bulkLoad for inputs that do not fit in one array
+     */
+    public static BTree bulkLoad(int minDegree, PrimitiveIterator.OfInt sorted, double fillFactor) {
+        BulkLoader loader = new BulkLoader(minDegree, fillFactor);
+        while (sorted.hasNext()) {
+            loader.add(sorted.nextInt());
+        }
+        return loader.finish();
+    }
+    
+    public static BTree bulkLoad(int minDegree, IntStream sorted, double fillFactor) {
+        return bulkLoad(minDegree, sorted.iterator(), fillFactor);
+    }
+    
+    /**
+     * BulkLoader keeps the rightmost (still open) node of every level
+     * 
+     * Keys are appended to the open leaf. When a node reaches the target
+     * size, a separator is appended to the open node one level up and a
+     * fresh node is opened on the current level (internal levels keep at
+     * least t keys per closed node so they can give one up).
+     * Only the rightmost node of each level can end up under-full; finish()
+     * repairs those by merging with, or borrowing from, their left sibling.
+     */
+    private static class BulkLoader {
+        private final int minDegree;
+        private final int target;
+        private final List<BTreeNode> open = new ArrayList<>(); // index 0 = leaf level
+        private boolean empty = true;
+        private int lastKey;
+        
+        BulkLoader(int minDegree, double fillFactor) {
+            if (minDegree < 2) {
+                throw new IllegalArgumentException("minDegree must be at least 2");
+            }
+            if (!(fillFactor > 0 && fillFactor <= 1)) {
+                throw new IllegalArgumentException("fillFactor must be in (0, 1]");
+            }
+            int maxKeys = 2 * minDegree - 1;
+            this.minDegree = minDegree;
+            this.target = Math.max(minDegree - 1, Math.min(maxKeys, (int) Math.ceil(fillFactor * maxKeys)));
+            open.add(new BTreeNode(minDegree, true));
+        }
+        
+        void add(int key) {
+            if (!empty && key < lastKey) {
+                throw new IllegalArgumentException("Keys must be in non-decreasing order: " + key + " after " + lastKey);
+            }
+            empty = false;
+            lastKey = key;
+            append(0, key, null);
+        }
+        
+        /**
+         * Append key (and, on internal levels, the child to its right) to the open node of a level
+         */
+        private void append(int level, int key, BTreeNode rightChild) {
+            BTreeNode node = open.get(level);
+            int limit = node.isLeaf ? target : Math.max(target, minDegree);
+            if (node.numKeys < limit) {
+                node.keys[node.numKeys] = key;
+                if (!node.isLeaf) {
+                    node.children[node.numKeys + 1] = rightChild;
+                }
+                node.numKeys++;
+                return;
+            }
+            
+            // Node is full: close it and send a separator up
+            BTreeNode next = new BTreeNode(minDegree, node.isLeaf);
+            int separator = key;
+            if (!node.isLeaf) {
+                // Hand the last key and child over so an open internal node never has 0 keys;
+                // that keeps every open node the last child of the open node above it
+                separator = node.keys[node.numKeys - 1];
+                next.children[0] = node.children[node.numKeys];
+                next.keys[0] = key;
+                next.children[1] = rightChild;
+                next.numKeys = 1;
+                node.children[node.numKeys] = null;
+                node.numKeys--;
+            }
+            open.set(level, next);
+            
+            if (level + 1 == open.size()) {
+                BTreeNode parent = new BTreeNode(minDegree, false);
+                parent.children[0] = node;
+                open.add(parent);
+            }
+            append(level + 1, separator, next);
+        }
+        
+        BTree finish() {
+            BTree tree = new BTree(minDegree);
+            if (empty) {
+                return tree;
+            }
+            
+            // Repair the rightmost spine bottom-up; each open node is the last child of the one above
+            for (int level = 0; level + 1 < open.size(); level++) {
+                BTreeNode node = open.get(level);
+                if (node.numKeys < minDegree - 1) {
+                    rebalanceLast(open.get(level + 1), node);
+                }
+            }
+            
+            // Drop levels left with a single child after merges
+            BTreeNode root = open.get(open.size() - 1);
+            while (root.numKeys == 0 && !root.isLeaf) {
+                root = root.children[0];
+            }
+            countSubtree(root);
+            tree.root = root;
+            return tree;
+        }
+        
+        private static int countSubtree(BTreeNode node) {
+            int size = node.numKeys;
+            if (!node.isLeaf) {
+                for (int i = 0; i <= node.numKeys; i++) {
+                    size += countSubtree(node.children[i]);
+                }
+            }
+            node.subtreeSize = size;
+            return size;
+        }
+        
+        /**
+         * Fix an under-full last child using its left sibling and the separator between them
+         */
+        private void rebalanceLast(BTreeNode parent, BTreeNode node) {
+            int sepIdx = parent.numKeys - 1;
+            BTreeNode left = parent.children[sepIdx];
+            int total = left.numKeys + 1 + node.numKeys;
+            
+            // Gather left keys, separator and node keys (plus children) in order
+            int[] keys = new int[total];
+            BTreeNode[] kids = node.isLeaf ? null : new BTreeNode[total + 1];
+            System.arraycopy(left.keys, 0, keys, 0, left.numKeys);
+            keys[left.numKeys] = parent.keys[sepIdx];
+            System.arraycopy(node.keys, 0, keys, left.numKeys + 1, node.numKeys);
+            if (kids != null) {
+                System.arraycopy(left.children, 0, kids, 0, left.numKeys + 1);
+                System.arraycopy(node.children, 0, kids, left.numKeys + 1, node.numKeys + 1);
+            }
+            
+            if (total <= 2 * minDegree - 1) {
+                // Everything fits in the left sibling: merge and drop the separator
+                System.arraycopy(keys, 0, left.keys, 0, total);
+                if (kids != null) {
+                    System.arraycopy(kids, 0, left.children, 0, total + 1);
+                }
+                left.numKeys = total;
+                parent.children[sepIdx + 1] = null;
+                parent.numKeys--;
+            } else {
+                // Split evenly around a new separator; both halves get at least t-1 keys
+                int leftCount = (total - 1) / 2;
+                int rightCount = total - 1 - leftCount;
+                System.arraycopy(keys, 0, left.keys, 0, leftCount);
+                parent.keys[sepIdx] = keys[leftCount];
+                System.arraycopy(keys, leftCount + 1, node.keys, 0, rightCount);
+                if (kids != null) {
+                    System.arraycopy(kids, 0, left.children, 0, leftCount + 1);
+                    System.arraycopy(kids, leftCount + 1, node.children, 0, rightCount + 1);
+                }
+                left.numKeys = leftCount;
+                node.numKeys = rightCount;
+            }
+        }
+    }
+    
+    /**
+     * Ascending cursor over all keys k with lo <= k <= hi
+     */
+    public Cursor cursor(int lo, int hi) {
+        return new Cursor(root, lo, hi, false);
+    }
+    
+    /**
+     * Cursor over all keys k with lo <= k <= hi
+     * @param descending - true to walk from hi down to lo
+     */
+    public Cursor cursor(int lo, int hi, boolean descending) {
+        return new Cursor(root, lo, hi, descending);
+    }
+    
+    /**
+     * Splittable spliterator over keys in [lo, hi], in ascending order
+     */
+    public Spliterator.OfInt spliterator(int lo, int hi) {
+        return new RangeSpliterator(root, lo, hi);
+    }
+    
+    /**
+     * Stream of keys in [lo, hi]; call parallel() to scan sub-ranges concurrently
+     */
+    public IntStream stream(int lo, int hi) {
+        return StreamSupport.intStream(spliterator(lo, hi), false);
+    }
+    
+    /**
+     * Cursor is a non-recursive in-order iterator over a key range
+     * 
+     * It keeps an explicit stack of (node, key index) frames, one per level,
+     * allocated once from the tree height, so iterating never allocates.
+     * Ascending: the top frame's index is the next key to return, and an
+     * internal frame (node, i) means "inside children[i], then keys[i]".
+     * Descending mirrors this: (node, i) means "inside children[i+1], then keys[i]".
+     * The cursor is not fail-fast; modifying the tree invalidates it.
+     */
+    public static class Cursor implements PrimitiveIterator.OfInt {
+        private final BTreeNode root;
+        private final int lo;
+        private final int hi;
+        private final boolean descending;
+        private final BTreeNode[] nodes;
+        private final int[] indexes;
+        private int depth; // number of frames on the stack
+        
+        Cursor(BTreeNode root, int lo, int hi, boolean descending) {
+            this.root = root;
+            this.lo = lo;
+            this.hi = hi;
+            this.descending = descending;
+            
+            int height = 0;
+            for (BTreeNode n = root; n != null; n = n.isLeaf ? null : n.children[0]) {
+                height++;
+            }
+            this.nodes = new BTreeNode[height];
+            this.indexes = new int[height];
+            seek(descending ? hi : lo);
+        }
+        
+        /**
+         * Reposition the cursor: ascending cursors continue at the first key >= key,
+         * descending cursors at the last key <= key (always clamped to [lo, hi])
+         */
+        public void seek(int key) {
+            depth = 0;
+            if (lo > hi) {
+                return;
+            }
+            key = descending ? Math.min(key, hi) : Math.max(key, lo);
+            
+            BTreeNode node = root;
+            while (node != null) {
+                int i;
+                if (descending) {
+                    // Last key <= target is at i-1; the subtree right of it is children[i]
+                    i = node.keySearch.upperBound(node.keys, node.numKeys, key);
+                    push(node, i - 1);
+                } else {
+                    i = node.keySearch.lowerBound(node.keys, node.numKeys, key);
+                    push(node, i);
+                }
+                node = node.isLeaf ? null : node.children[i];
+            }
+            settle();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (depth == 0) {
+                return false;
+            }
+            int key = nodes[depth - 1].keys[indexes[depth - 1]];
+            return descending ? key >= lo : key <= hi;
+        }
+        
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            BTreeNode node = nodes[depth - 1];
+            int i = indexes[depth - 1];
+            int key = node.keys[i];
+            
+            if (descending) {
+                indexes[depth - 1] = i - 1;
+                if (!node.isLeaf) {
+                    descendRight(node.children[i]);
+                }
+            } else {
+                indexes[depth - 1] = i + 1;
+                if (!node.isLeaf) {
+                    descendLeft(node.children[i + 1]);
+                }
+            }
+            settle();
+            return key;
+        }
+        
+        private void push(BTreeNode node, int index) {
+            nodes[depth] = node;
+            indexes[depth] = index;
+            depth++;
+        }
+        
+        private void descendLeft(BTreeNode node) {
+            while (true) {
+                push(node, 0);
+                if (node.isLeaf) {
+                    return;
+                }
+                node = node.children[0];
+            }
+        }
+        
+        private void descendRight(BTreeNode node) {
+            while (true) {
+                push(node, node.numKeys - 1);
+                if (node.isLeaf) {
+                    return;
+                }
+                node = node.children[node.numKeys];
+            }
+        }
+        
+        /**
+         * Pop frames whose keys are used up so the top frame points at the next key
+         */
+        private void settle() {
+            if (descending) {
+                while (depth > 0 && indexes[depth - 1] < 0) {
+                    nodes[--depth] = null;
+                }
+            } else {
+                while (depth > 0 && indexes[depth - 1] >= nodes[depth - 1].numKeys) {
+                    nodes[--depth] = null;
+                }
+            }
+        }
+    }
+    
+    /**
+     * RangeSpliterator splits a key range by value at separator keys
+     * Splitting picks the middle in-range key of the highest node that has
+     * one, so both halves cover roughly equal numbers of subtrees.
+     */
+    private static class RangeSpliterator implements Spliterator.OfInt {
+        private final BTreeNode root;
+        private int lo;
+        private final int hi;
+        private Cursor cursor; // created on first traversal; no splitting after that
+        private long estimate = Long.MAX_VALUE;
+        
+        RangeSpliterator(BTreeNode root, int lo, int hi) {
+            this.root = root;
+            this.lo = lo;
+            this.hi = hi;
+        }
+        
+        @Override
+        public OfInt trySplit() {
+            if (cursor != null || lo >= hi) {
+                return null;
+            }
+            BTreeNode node = root;
+            while (node != null) {
+                // Candidate separators are the keys in (lo, hi]
+                int first = 0;
+                while (first < node.numKeys && node.keys[first] <= lo) {
+                    first++;
+                }
+                int last = first;
+                while (last < node.numKeys && node.keys[last] <= hi) {
+                    last++;
+                }
+                if (last > first) {
+                    int mid = node.keys[(first + last - 1) >>> 1];
+                    RangeSpliterator prefix = new RangeSpliterator(root, lo, mid - 1);
+                    lo = mid;
+                    estimate >>>= 1;
+                    prefix.estimate = estimate;
+                    return prefix;
+                }
+                // Whole range lies inside one child
+                node = node.isLeaf ? null : node.children[first];
+            }
+            return null;
+        }
+        
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (cursor == null) {
+                cursor = new Cursor(root, lo, hi, false);
+            }
+            if (!cursor.hasNext()) {
+                return false;
+            }
+            action.accept(cursor.nextInt());
+            return true;
+        }
+        
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            if (cursor == null) {
+                cursor = new Cursor(root, lo, hi, false);
+            }
+            while (cursor.hasNext()) {
+                action.accept(cursor.nextInt());
+            }
+        }
+        
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+        
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | NONNULL;
+        }
+        
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null; // natural order
+        }
+    }
+    
     /**
      * Main method with comprehensive example
      */
@@ -560,5 +1947,108 @@ public class BTree {
         System.out.println("=== FINAL TREE ===");
         System.out.print("Final tree: ");
         btree.traverse();
+        System.out.println();
+        
+        System.out.println("=== BULK LOAD ===");
+        BTree loaded = BTree.bulkLoad(3, IntStream.rangeClosed(1, 20), 0.8);
+        System.out.print("Bulk-loaded 1..20 with fill factor 0.8: ");
+        loaded.traverse();
+        System.out.println();
+        
+        System.out.println("=== RANGE SCANS ===");
+        System.out.print("Keys in [5, 12]: ");
+        Cursor cursor = loaded.cursor(5, 12);
+        while (cursor.hasNext()) {
+            System.out.print(cursor.nextInt() + " ");
+        }
+        System.out.println();
+        System.out.print("Keys in [5, 12] descending: ");
+        cursor = loaded.cursor(5, 12, true);
+        while (cursor.hasNext()) {
+            System.out.print(cursor.nextInt() + " ");
+        }
+        System.out.println();
+        System.out.println("Parallel sum of [1, 20]: " + loaded.stream(1, 20).parallel().sum());
+        System.out.println();
+        
+        System.out.println("=== ORDER STATISTICS ===");
+        System.out.println("size = " + loaded.size() + ", rank(8) = " + loaded.rank(8)
+                + ", select(0) = " + loaded.select(0) + ", select(9) = " + loaded.select(9)
+                + ", countRange(5, 12) = " + loaded.countRange(5, 12));
+        System.out.println();
+        
+        System.out.println("=== BLOOM FILTERS ===");
+        BTree filtered = BTree.bulkLoad(3, IntStream.range(0, 1000).map(i -> 2 * i), 0.8);
+        filtered.setBloomFilters(2, 10);
+        int[] absent = IntStream.range(0, 1000).map(i -> 2 * i + 1).toArray();
+        System.out.printf("Even keys 0..1998, filters on height-2 subtrees at 10 bits/key: "
+                + "false positive rate on odd keys %.3f%n", filtered.bloomFalsePositiveRate(absent));
+        System.out.println("search(500) = " + filtered.search(500) + ", search(501) = " + filtered.search(501));
+        System.out.println();
+        
+        System.out.println("=== BATCH INSERT ===");
+        BTree batched = new BTree(3);
+        batched.insertAll(new int[]{42, 7, 19, 3, 25, 11, 36, 7, 30, 1, 14, 22});
+        System.out.print("insertAll of 12 unsorted keys: ");
+        batched.traverse();
+        System.out.println();
+        
+        System.out.println("=== NODE POOL ===");
+        BTree churn = new BTree(3);
+        NodePool pool = new NodePool(3, 64);
+        churn.setNodePool(pool);
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(200);
+            if (churn.search(key)) {
+                churn.delete(key);
+            } else {
+                churn.insert(key);
+            }
+        }
+        System.out.println("20000 mixed inserts/deletes: pool hits " + pool.hits() + ", misses " + pool.misses()
+                + ", pooled now " + pool.size());
+        System.out.println();
+        
+        System.out.println("=== SNAPSHOTS ===");
+        Snapshot before = loaded.snapshot();
+        for (int key = 1; key <= 20; key += 2) {
+            loaded.delete(key);
+        }
+        loaded.insert(100);
+        System.out.print("Tree after deleting odd keys and inserting 100: ");
+        loaded.traverse();
+        System.out.print("Snapshot taken before the changes: ");
+        before.stream(Integer.MIN_VALUE, Integer.MAX_VALUE).forEach(k -> System.out.print(k + " "));
+        System.out.println();
+        System.out.println("Snapshot contains 7: " + before.search(7) + ", tree contains 7: " + loaded.search(7));
+        System.out.println();
+        
+        System.out.println("=== RELAXED DELETE ===");
+        for (int minKeys : new int[]{2, 0}) {
+            BTree thrash = new BTree(3);
+            thrash.setRelaxedDelete(minKeys);
+            for (int key = 0; key < 1000; key++) {
+                thrash.insert(key);
+            }
+            Random churnKeys = new Random(7);
+            int[] deleted = new int[16];
+            for (int op = 0; op < 20000; op++) {
+                // Delete a random key and re-insert the one deleted 16 operations ago
+                int slot = op % deleted.length;
+                if (op >= deleted.length) {
+                    thrash.insert(deleted[slot]);
+                }
+                int key = churnKeys.nextInt(1000);
+                while (!thrash.search(key)) {
+                    key = churnKeys.nextInt(1000);
+                }
+                thrash.delete(key);
+                deleted[slot] = key;
+            }
+            System.out.println("minKeys " + minKeys + ": 20000 deletes, each re-inserted later -> merges "
+                    + thrash.merges() + ", merges avoided " + thrash.mergesAvoided()
+                    + ", compact() fixes " + thrash.compact() + ", size " + thrash.size());
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,508 @@
+import java.util.Arrays;
+
+/**
+ * B+ Tree Implementation in Java
+ *
+ * A B+ tree is the B-tree variant from Alltrees.txt used for range queries:
+ * 1. All keys and values live in the leaves
+ * 2. Internal nodes only hold separator keys to route searches
+ *    (keys < separator go left, keys >= separator go right)
+ * 3. Leaves are linked both ways (next/prev), so a range scan is a single
+ *    descent followed by a sequential walk along the leaf chain
+ * 4. Every node except the root holds between (t-1) and (2t-1) keys
+ *
+ * Like BTree, insert splits full nodes on the way down and delete fills
+ * minimal nodes on the way down (borrow from a sibling or merge), so each
+ * operation is a single root-to-leaf pass.
+ */
+public class BPlusTree<V> {
+
+    /**
+     * Node is a leaf (keys + values + chain links) or an internal node (separators + children)
+     */
+    static final class Node {
+        final boolean isLeaf;
+        final int[] keys;
+        final Node[] children; // internal nodes only
+        final Object[] values; // leaves only
+        Node next;             // leaf chain
+        Node prev;
+        int numKeys;
+
+        Node(int minDegree, boolean isLeaf) {
+            this.isLeaf = isLeaf;
+            this.keys = new int[2 * minDegree - 1];
+            this.children = isLeaf ? null : new Node[2 * minDegree];
+            this.values = isLeaf ? new Object[2 * minDegree - 1] : null;
+        }
+    }
+
+    private final int minDegree;
+    private final int maxKeys;
+    private Node root;
+    private int size;
+
+    /**
+     * Constructor for B+ tree
+     * @param minDegree - minimum degree of the tree (at least 2)
+     */
+    public BPlusTree(int minDegree) {
+        if (minDegree < 2) throw new IllegalArgumentException("minDegree must be at least 2");
+        this.minDegree = minDegree;
+        this.maxKeys = 2 * minDegree - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Index of the first key >= key
+     */
+    private static int lowerBound(Node node, int key) {
+        int i = 0;
+        while (i < node.numKeys && node.keys[i] < key) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Index of the first key > key (the child to follow in an internal node)
+     */
+    private static int upperBound(Node node, int key) {
+        int i = 0;
+        while (i < node.numKeys && node.keys[i] <= key) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Leaf whose key range contains key
+     */
+    private Node findLeaf(int key) {
+        Node node = root;
+        while (!node.isLeaf) {
+            node = node.children[upperBound(node, key)];
+        }
+        return node;
+    }
+
+    /**
+     * Point lookup
+     * @return the value stored for key, or null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (root == null) {
+            return null;
+        }
+        Node leaf = findLeaf(key);
+        int i = lowerBound(leaf, key);
+        return (i < leaf.numKeys && leaf.keys[i] == key) ? (V) leaf.values[i] : null;
+    }
+
+    public boolean containsKey(int key) {
+        if (root == null) {
+            return false;
+        }
+        Node leaf = findLeaf(key);
+        int i = lowerBound(leaf, key);
+        return i < leaf.numKeys && leaf.keys[i] == key;
+    }
+
+    /*
+     * INSERTION
+     */
+
+    /**
+     * Insert or replace the value for key
+     * @return the previous value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (root == null) {
+            root = new Node(minDegree, true);
+        }
+        if (root.numKeys == maxKeys) {
+            // Grow the tree: new root with the old root as its only child
+            Node newRoot = new Node(minDegree, false);
+            newRoot.children[0] = root;
+            splitChild(newRoot, 0);
+            root = newRoot;
+        }
+
+        Node node = root;
+        while (!node.isLeaf) {
+            int i = upperBound(node, key);
+            if (node.children[i].numKeys == maxKeys) {
+                splitChild(node, i);
+                if (key >= node.keys[i]) {
+                    i++;
+                }
+            }
+            node = node.children[i];
+        }
+
+        int i = lowerBound(node, key);
+        if (i < node.numKeys && node.keys[i] == key) {
+            V old = (V) node.values[i];
+            node.values[i] = value;
+            return old;
+        }
+        System.arraycopy(node.keys, i, node.keys, i + 1, node.numKeys - i);
+        System.arraycopy(node.values, i, node.values, i + 1, node.numKeys - i);
+        node.keys[i] = key;
+        node.values[i] = value;
+        node.numKeys++;
+        size++;
+        return null;
+    }
+
+    /**
+     * Split the full child at index of parent
+     * Leaf split: the right half's first key is copied up as the separator.
+     * Internal split: the middle separator moves up, as in BTree.splitChild.
+     */
+    private void splitChild(Node parent, int index) {
+        int t = minDegree;
+        Node full = parent.children[index];
+        Node right = new Node(t, full.isLeaf);
+        int separator;
+
+        if (full.isLeaf) {
+            // Left keeps t entries, right gets the other t-1
+            System.arraycopy(full.keys, t, right.keys, 0, t - 1);
+            System.arraycopy(full.values, t, right.values, 0, t - 1);
+            Arrays.fill(full.values, t, maxKeys, null);
+            right.numKeys = t - 1;
+            full.numKeys = t;
+            separator = right.keys[0];
+
+            // Link right into the leaf chain after full
+            right.next = full.next;
+            if (right.next != null) {
+                right.next.prev = right;
+            }
+            right.prev = full;
+            full.next = right;
+        } else {
+            System.arraycopy(full.keys, t, right.keys, 0, t - 1);
+            System.arraycopy(full.children, t, right.children, 0, t);
+            Arrays.fill(full.children, t, 2 * t, null);
+            right.numKeys = t - 1;
+            full.numKeys = t - 1;
+            separator = full.keys[t - 1];
+        }
+
+        int n = parent.numKeys;
+        System.arraycopy(parent.children, index + 1, parent.children, index + 2, n - index);
+        parent.children[index + 1] = right;
+        System.arraycopy(parent.keys, index, parent.keys, index + 1, n - index);
+        parent.keys[index] = separator;
+        parent.numKeys = n + 1;
+    }
+
+    /*
+     * DELETION
+     */
+
+    /**
+     * Remove key from the tree
+     * @return the removed value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (root == null) {
+            return null;
+        }
+
+        Node node = root;
+        while (!node.isLeaf) {
+            int i = upperBound(node, key);
+            // Make sure the child can lose a key before stepping into it
+            if (node.children[i].numKeys < minDegree) {
+                i = fill(node, i);
+            }
+            node = node.children[i];
+        }
+
+        V removed = null;
+        int i = lowerBound(node, key);
+        if (i < node.numKeys && node.keys[i] == key) {
+            removed = (V) node.values[i];
+            System.arraycopy(node.keys, i + 1, node.keys, i, node.numKeys - i - 1);
+            System.arraycopy(node.values, i + 1, node.values, i, node.numKeys - i - 1);
+            node.numKeys--;
+            node.values[node.numKeys] = null;
+            size--;
+        }
+
+        // If root has 0 keys, make its first child the new root
+        while (root != null && root.numKeys == 0) {
+            root = root.isLeaf ? null : root.children[0];
+        }
+        return removed;
+    }
+
+    /**
+     * Give the child at idx at least minDegree keys
+     * @return index of the child that now covers the keys the old child covered
+     */
+    private int fill(Node parent, int idx) {
+        if (idx != 0 && parent.children[idx - 1].numKeys >= minDegree) {
+            borrowFromPrev(parent, idx);
+            return idx;
+        }
+        if (idx != parent.numKeys && parent.children[idx + 1].numKeys >= minDegree) {
+            borrowFromNext(parent, idx);
+            return idx;
+        }
+        if (idx != parent.numKeys) {
+            merge(parent, idx);
+            return idx;
+        }
+        merge(parent, idx - 1);
+        return idx - 1;
+    }
+
+    private void borrowFromPrev(Node parent, int idx) {
+        Node child = parent.children[idx];
+        Node sibling = parent.children[idx - 1];
+        int sn = sibling.numKeys;
+
+        System.arraycopy(child.keys, 0, child.keys, 1, child.numKeys);
+        if (child.isLeaf) {
+            // Move the sibling's last entry over; it becomes the new separator
+            System.arraycopy(child.values, 0, child.values, 1, child.numKeys);
+            child.keys[0] = sibling.keys[sn - 1];
+            child.values[0] = sibling.values[sn - 1];
+            sibling.values[sn - 1] = null;
+            parent.keys[idx - 1] = child.keys[0];
+        } else {
+            // Rotate through the parent, as in BTree
+            System.arraycopy(child.children, 0, child.children, 1, child.numKeys + 1);
+            child.keys[0] = parent.keys[idx - 1];
+            child.children[0] = sibling.children[sn];
+            sibling.children[sn] = null;
+            parent.keys[idx - 1] = sibling.keys[sn - 1];
+        }
+        child.numKeys++;
+        sibling.numKeys--;
+    }
+
+    private void borrowFromNext(Node parent, int idx) {
+        Node child = parent.children[idx];
+        Node sibling = parent.children[idx + 1];
+        int cn = child.numKeys;
+        int sn = sibling.numKeys;
+
+        if (child.isLeaf) {
+            child.keys[cn] = sibling.keys[0];
+            child.values[cn] = sibling.values[0];
+            System.arraycopy(sibling.keys, 1, sibling.keys, 0, sn - 1);
+            System.arraycopy(sibling.values, 1, sibling.values, 0, sn - 1);
+            sibling.values[sn - 1] = null;
+            parent.keys[idx] = sibling.keys[0];
+        } else {
+            child.keys[cn] = parent.keys[idx];
+            child.children[cn + 1] = sibling.children[0];
+            parent.keys[idx] = sibling.keys[0];
+            System.arraycopy(sibling.keys, 1, sibling.keys, 0, sn - 1);
+            System.arraycopy(sibling.children, 1, sibling.children, 0, sn);
+            sibling.children[sn] = null;
+        }
+        child.numKeys++;
+        sibling.numKeys--;
+    }
+
+    /**
+     * Merge child idx+1 into child idx and drop the separator between them
+     */
+    private void merge(Node parent, int idx) {
+        Node child = parent.children[idx];
+        Node sibling = parent.children[idx + 1];
+        int cn = child.numKeys;
+        int sn = sibling.numKeys;
+
+        if (child.isLeaf) {
+            // Leaves hold every key, so the separator is simply dropped
+            System.arraycopy(sibling.keys, 0, child.keys, cn, sn);
+            System.arraycopy(sibling.values, 0, child.values, cn, sn);
+            child.numKeys = cn + sn;
+            child.next = sibling.next;
+            if (child.next != null) {
+                child.next.prev = child;
+            }
+        } else {
+            child.keys[cn] = parent.keys[idx];
+            System.arraycopy(sibling.keys, 0, child.keys, cn + 1, sn);
+            System.arraycopy(sibling.children, 0, child.children, cn + 1, sn + 1);
+            child.numKeys = cn + sn + 1;
+        }
+
+        int n = parent.numKeys;
+        System.arraycopy(parent.keys, idx + 1, parent.keys, idx, n - idx - 1);
+        System.arraycopy(parent.children, idx + 2, parent.children, idx + 1, n - idx - 1);
+        parent.children[n] = null;
+        parent.numKeys = n - 1;
+    }
+
+    /*
+     * RANGE SCANS
+     */
+
+    /**
+     * Ascending cursor over entries with lo <= key <= hi
+     */
+    public Cursor<V> range(int lo, int hi) {
+        return new Cursor<>(this, lo, hi, false);
+    }
+
+    /**
+     * Descending cursor over entries with lo <= key <= hi, starting at hi
+     */
+    public Cursor<V> descendingRange(int lo, int hi) {
+        return new Cursor<>(this, lo, hi, true);
+    }
+
+    /**
+     * Cursor walks the leaf chain; only the initial positioning descends the tree
+     * Usage: while (cursor.next()) { cursor.key(); cursor.value(); }
+     * Not fail-fast: modifying the tree invalidates open cursors.
+     */
+    public static final class Cursor<V> {
+        private final int lo;
+        private final int hi;
+        private final boolean descending;
+        private Node leaf;
+        private int pos;
+        private boolean started;
+
+        private Cursor(BPlusTree<V> tree, int lo, int hi, boolean descending) {
+            this.lo = lo;
+            this.hi = hi;
+            this.descending = descending;
+            if (tree.root == null || lo > hi) {
+                return;
+            }
+            if (descending) {
+                leaf = tree.findLeaf(hi);
+                pos = upperBound(leaf, hi) - 1;
+            } else {
+                leaf = tree.findLeaf(lo);
+                pos = lowerBound(leaf, lo);
+            }
+        }
+
+        /**
+         * Move to the next entry in range
+         * @return false once the range is exhausted
+         */
+        public boolean next() {
+            if (leaf == null) {
+                return false;
+            }
+            if (started) {
+                pos += descending ? -1 : 1;
+            }
+            started = true;
+
+            // Step across leaf boundaries (a leaf may be left behind empty-handed)
+            while (leaf != null && (pos < 0 || pos >= leaf.numKeys)) {
+                if (descending) {
+                    leaf = leaf.prev;
+                    pos = leaf == null ? 0 : leaf.numKeys - 1;
+                } else {
+                    leaf = leaf.next;
+                    pos = 0;
+                }
+            }
+            if (leaf == null || (descending ? leaf.keys[pos] < lo : leaf.keys[pos] > hi)) {
+                leaf = null;
+                return false;
+            }
+            return true;
+        }
+
+        public int key() {
+            return leaf.keys[pos];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V value() {
+            return (V) leaf.values[pos];
+        }
+    }
+
+    /**
+     * Print every leaf in chain order, e.g. [1 2 3] <-> [4 5] <-> ...
+     */
+    public void printLeaves() {
+        if (root == null) {
+            System.out.println("(empty)");
+            return;
+        }
+        Node leaf = root;
+        while (!leaf.isLeaf) {
+            leaf = leaf.children[0];
+        }
+        StringBuilder sb = new StringBuilder();
+        for (; leaf != null; leaf = leaf.next) {
+            sb.append('[');
+            for (int i = 0; i < leaf.numKeys; i++) {
+                sb.append(i == 0 ? "" : " ").append(leaf.keys[i]);
+            }
+            sb.append(']').append(leaf.next != null ? " <-> " : "");
+        }
+        System.out.println(sb);
+    }
+
+    public static void main(String[] args) {
+        System.out.println("=== B+ TREE DEMONSTRATION ===");
+        BPlusTree<String> tree = new BPlusTree<>(3);
+        int[] keys = {10, 20, 5, 6, 12, 30, 7, 17, 3, 25, 1, 15};
+        for (int key : keys) {
+            tree.put(key, "v" + key);
+        }
+        System.out.print("Leaf chain: ");
+        tree.printLeaves();
+
+        System.out.println("get(12) = " + tree.get(12) + ", get(13) = " + tree.get(13));
+
+        System.out.print("Range [6, 20]: ");
+        Cursor<String> cursor = tree.range(6, 20);
+        while (cursor.next()) {
+            System.out.print(cursor.key() + "=" + cursor.value() + " ");
+        }
+        System.out.println();
+
+        System.out.print("Range [6, 20] descending: ");
+        cursor = tree.descendingRange(6, 20);
+        while (cursor.next()) {
+            System.out.print(cursor.key() + " ");
+        }
+        System.out.println();
+
+        for (int key : new int[]{6, 12, 10, 30}) {
+            tree.remove(key);
+        }
+        System.out.print("After removing 6, 12, 10, 30: ");
+        tree.printLeaves();
+
+        // Time-series style: minute timestamps, then scan one hour
+        BPlusTree<Long> series = new BPlusTree<>(64);
+        for (int minute = 0; minute < 1_000_000; minute++) {
+            series.put(minute, (long) minute * minute);
+        }
+        long sum = 0;
+        int count = 0;
+        Cursor<Long> hour = series.range(600_000, 600_059);
+        while (hour.next()) {
+            sum += hour.value();
+            count++;
+        }
+        System.out.println("Scanned " + count + " entries of one hour, sum = " + sum + ", size = " + series.size());
+    }
+}
@@ -0,0 +1,39 @@
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Negative-lookup throughput of BTree with and without per-subtree Bloom filters
+ *
+ * Loads N even keys, then times lookups of random odd keys (all misses)
+ * and random even keys (all hits) with filters off and with filters on
+ * subtrees of height 1..3, and reports the measured false positive rate
+ * of the filters on the odd keys.
+ */
+public class BTreeBloomBenchmark {
+
+    private static final int KEYS = 4_000_000;
+    private static final int LOOKUPS = 4_000_000;
+    private static final int MIN_DEGREE = 16;
+    private static final int BITS_PER_KEY = 10;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        int[] misses = new int[LOOKUPS];
+        int[] hits = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            misses[i] = 2 * random.nextInt(KEYS) + 1;
+            hits[i] = 2 * random.nextInt(KEYS);
+        }
+
+        BTree tree = BTree.bulkLoad(MIN_DEGREE, IntStream.range(0, KEYS).map(i -> 2 * i), 0.7);
+        System.out.printf("%-10s %16s %16s %12s%n", "filters", "misses/sec", "hits/sec", "false pos");
+        for (int height = 0; height <= 3; height++) {
+            tree.setBloomFilters(Math.max(height, 1), height == 0 ? 0 : BITS_PER_KEY);
+            String name = height == 0 ? "none" : "height " + height;
+            String rate = height == 0 ? "-" : String.format("%.4f", tree.bloomFalsePositiveRate(misses));
+            System.out.printf("%-10s %,16.0f %,16.0f %12s%n", name, BTreeSearchBenchmark.measure(tree, misses, ROUNDS),
+                    BTreeSearchBenchmark.measure(tree, hits, ROUNDS), rate);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Allocation, throughput and merges of a steady-size BTree workload
+ *
+ * Fills a tree to N keys, then runs a mix that deletes a present key and
+ * inserts an absent one, so the tree size never changes while splits and
+ * merges keep happening. Runs it with eager deletes, with a NodePool, and
+ * with relaxed deletes (nodes may drop to one key; compacted at the end).
+ * Reports bytes allocated by the benchmark thread (HotSpot's per-thread
+ * allocation counter), operations/sec and merges per 1000 operations.
+ */
+public class BTreeChurnBenchmark {
+
+    private static final int KEYS = 200_000;
+    private static final int OPS = 4_000_000;
+    private static final int MIN_DEGREE = 4;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        System.out.printf("%-10s %16s %16s %12s %14s%n", "mode", "ops/sec", "bytes/op", "pool hits", "merges/1000");
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String mode : new String[]{"eager", "NodePool", "relaxed"}) {
+                BTree tree = new BTree(MIN_DEGREE);
+                BTree.NodePool pool = new BTree.NodePool(MIN_DEGREE, 1024);
+                if (mode.equals("NodePool")) {
+                    tree.setNodePool(pool);
+                }
+                // Even keys are present, odd keys absent; each op swaps one of each
+                int[] present = new int[KEYS];
+                int[] absent = new int[KEYS];
+                for (int i = 0; i < KEYS; i++) {
+                    present[i] = 2 * i;
+                    absent[i] = 2 * i + 1;
+                    tree.insert(present[i]);
+                }
+                Random random = new Random(42);
+                if (mode.equals("relaxed")) {
+                    tree.setRelaxedDelete(1);
+                }
+                long merges = tree.merges();
+
+                long bytes = threads.getThreadAllocatedBytes(threadId);
+                long start = System.nanoTime();
+                for (int op = 0; op < OPS; op++) {
+                    int i = random.nextInt(KEYS);
+                    int j = random.nextInt(KEYS);
+                    tree.delete(present[i]);
+                    tree.insert(absent[j]);
+                    int swap = present[i];
+                    present[i] = absent[j];
+                    absent[j] = swap;
+                }
+                tree.compact();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                bytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+
+                merges = tree.merges() - merges;
+                System.out.printf("%-10s %,16.0f %16.2f %12d %14.2f%n", mode,
+                        2L * OPS / seconds, (double) bytes / (2L * OPS), pool.hits(), 1000.0 * merges / (2L * OPS));
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.Random;
+
+/**
+ * Ingest throughput of BTree.insert per key versus BTree.insertAll per batch
+ *
+ * Inserts the same random keys into fresh trees, once key by key and once
+ * in batches of each size, and reports keys/sec. The batched path includes
+ * the cost of copying and sorting each batch.
+ */
+public class BTreeInsertBenchmark {
+
+    private static final int KEYS = 4_000_000;
+    private static final int MIN_DEGREE = 32;
+    private static final int ROUNDS = 3;
+    private static final int[] BATCH_SIZES = {1_000, 10_000, 100_000};
+
+    public static void main(String[] args) {
+        int[] keys = new int[KEYS];
+        Random random = new Random(42);
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = random.nextInt();
+        }
+
+        System.out.printf("%-22s %16s%n", "path", "keys/sec");
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            BTree tree = new BTree(MIN_DEGREE);
+            for (int key : keys) {
+                tree.insert(key);
+            }
+            report("insert", start);
+
+            for (int batchSize : BATCH_SIZES) {
+                int[] batch = new int[batchSize];
+                start = System.nanoTime();
+                tree = new BTree(MIN_DEGREE);
+                for (int from = 0; from < KEYS; from += batchSize) {
+                    int length = Math.min(batchSize, KEYS - from);
+                    if (length != batch.length) {
+                        batch = new int[length];
+                    }
+                    System.arraycopy(keys, from, batch, 0, length);
+                    tree.insertAll(batch);
+                }
+                report("insertAll(" + batchSize + ")", start);
+            }
+            System.out.println();
+        }
+    }
+
+    private static void report(String path, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-22s %,16.0f%n", path, KEYS / seconds);
+    }
+}
@@ -0,0 +1,620 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntConsumer;
+
+/**
+ * Secondary Index: int key -> compressed posting list of int row IDs
+ *
+ * Keys live in a LongLongBTreeMap whose value is a slot in an array of
+ * PostingLists, so the tree stays a plain ordered map and one key can own
+ * any number of IDs. Slots of keys whose last ID was removed are reused.
+ *
+ * A PostingList holds a sorted set of IDs split into chunks by the high
+ * 16 bits (as in Roaring bitmaps). Each chunk picks its form by density:
+ *
+ * - Sparse: the low 16 bits as varint-encoded gaps, 1-3 bytes per ID
+ * - Dense:  a 65536-bit bitmap (8 KB), once the varint form would be larger
+ *
+ * Appending IDs in increasing order (the usual case for row IDs) is O(1);
+ * adds and removes inside a sparse chunk re-encode that chunk only. An AND
+ * of two keys walks both lists chunk by chunk, skips chunks present on one
+ * side only, and ANDs bitmap words 64 IDs at a time when both chunks are
+ * dense. IDs are ordered as unsigned ints (negative IDs come last).
+ */
+public class BTreeMultimap {
+
+    private static final int DENSE_BYTES = 8192;      // size of a bitmap chunk; sparse chunks larger than this go dense
+    private static final int SPARSE_CARDINALITY = 2048; // dense chunks this small go back to varints (at most 6 KB)
+
+    /**
+     * Chunk holds the IDs that share one value of id >>> 16
+     */
+    static final class Chunk {
+        final int high;
+        int cardinality;
+        int last;      // largest low value, valid when cardinality > 0
+        byte[] bytes;  // sparse form: varint gaps between sorted low values (the first one from 0)
+        int length;    // bytes used in the sparse form
+        long[] bits;   // dense form: 1024 words, one bit per low value; null while sparse
+
+        Chunk(int high) {
+            this.high = high;
+            this.bytes = new byte[8];
+        }
+
+        boolean contains(int low) {
+            if (bits != null) {
+                return (bits[low >>> 6] & (1L << low)) != 0;
+            }
+            if (cardinality == 0 || low > last) {
+                return false;
+            }
+            int value = 0;
+            int pos = 0;
+            while (pos < length) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[pos++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value += gap;
+                if (value >= low) {
+                    return value == low;
+                }
+            }
+            return false;
+        }
+
+        boolean add(int low) {
+            if (bits != null) {
+                long mask = 1L << low;
+                if ((bits[low >>> 6] & mask) != 0) {
+                    return false;
+                }
+                bits[low >>> 6] |= mask;
+                cardinality++;
+                last = Math.max(last, low);
+                return true;
+            }
+            if (cardinality == 0 || low > last) {
+                // Append: the common case for increasing row IDs
+                appendGap(cardinality == 0 ? low : low - last);
+                last = low;
+                cardinality++;
+            } else {
+                int[] values = decode();
+                int i = Arrays.binarySearch(values, low);
+                if (i >= 0) {
+                    return false;
+                }
+                i = -i - 1;
+                int[] grown = new int[values.length + 1];
+                System.arraycopy(values, 0, grown, 0, i);
+                grown[i] = low;
+                System.arraycopy(values, i, grown, i + 1, values.length - i);
+                encode(grown, grown.length);
+            }
+            if (length > DENSE_BYTES) {
+                toDense();
+            }
+            return true;
+        }
+
+        boolean remove(int low) {
+            if (bits != null) {
+                long mask = 1L << low;
+                if ((bits[low >>> 6] & mask) == 0) {
+                    return false;
+                }
+                bits[low >>> 6] &= ~mask;
+                cardinality--;
+                if (cardinality < SPARSE_CARDINALITY) {
+                    toSparse();
+                } else if (low == last) {
+                    last = previousSetBit(low);
+                }
+                return true;
+            }
+            if (!contains(low)) {
+                return false;
+            }
+            int[] values = decode();
+            int i = Arrays.binarySearch(values, low);
+            System.arraycopy(values, i + 1, values, i, values.length - i - 1);
+            encode(values, values.length - 1);
+            return true;
+        }
+
+        /**
+         * Feed every ID of this chunk, ascending, to action
+         */
+        void forEach(IntConsumer action) {
+            int base = high << 16;
+            if (bits != null) {
+                for (int w = 0; w < bits.length; w++) {
+                    long word = bits[w];
+                    while (word != 0) {
+                        action.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+                return;
+            }
+            int value = 0;
+            int pos = 0;
+            while (pos < length) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[pos++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value += gap;
+                action.accept(base | value);
+            }
+        }
+
+        /**
+         * Feed the IDs present in both chunks (same high bits), ascending, to action
+         */
+        static void and(Chunk a, Chunk b, IntConsumer action) {
+            int base = a.high << 16;
+            if (a.bits != null && b.bits != null) {
+                for (int w = 0; w < a.bits.length; w++) {
+                    long word = a.bits[w] & b.bits[w];
+                    while (word != 0) {
+                        action.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else if (a.bits != null || b.bits != null) {
+                Chunk dense = (a.bits != null) ? a : b;
+                Chunk sparse = (a.bits != null) ? b : a;
+                sparse.forEach(id -> {
+                    int low = id & 0xFFFF;
+                    if ((dense.bits[low >>> 6] & (1L << low)) != 0) {
+                        action.accept(id);
+                    }
+                });
+            } else {
+                int[] left = a.decode();
+                int[] right = b.decode();
+                int i = 0;
+                int j = 0;
+                while (i < left.length && j < right.length) {
+                    if (left[i] < right[j]) {
+                        i++;
+                    } else if (left[i] > right[j]) {
+                        j++;
+                    } else {
+                        action.accept(base | left[i]);
+                        i++;
+                        j++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Bytes held by this chunk's payload
+         */
+        int bytes() {
+            return (bits != null) ? DENSE_BYTES : bytes.length;
+        }
+
+        private void appendGap(int gap) {
+            if (length + 3 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + 3));
+            }
+            while (gap >= 0x80) {
+                bytes[length++] = (byte) (gap | 0x80);
+                gap >>>= 7;
+            }
+            bytes[length++] = (byte) gap;
+        }
+
+        private int[] decode() {
+            int[] values = new int[cardinality];
+            int[] count = {0};
+            forEach(id -> values[count[0]++] = id & 0xFFFF);
+            return values;
+        }
+
+        private void encode(int[] values, int count) {
+            length = 0;
+            cardinality = 0;
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                appendGap(values[i] - previous);
+                previous = values[i];
+                cardinality++;
+            }
+            last = previous;
+            if (length < bytes.length / 4) {
+                bytes = Arrays.copyOf(bytes, Math.max(8, 2 * length));
+            }
+        }
+
+        private void toDense() {
+            long[] dense = new long[DENSE_BYTES / 8];
+            forEach(id -> dense[(id & 0xFFFF) >>> 6] |= 1L << id);
+            bits = dense;
+            bytes = null;
+            length = 0;
+        }
+
+        private void toSparse() {
+            int[] values = decode();
+            bits = null;
+            bytes = new byte[8];
+            encode(values, values.length);
+        }
+
+        private int previousSetBit(int low) {
+            int w = low >>> 6;
+            long word = bits[w] & (-1L >>> (63 - (low & 63)));
+            while (word == 0 && w > 0) {
+                word = bits[--w];
+            }
+            return (word == 0) ? 0 : (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+        }
+    }
+
+    /**
+     * PostingList is a sorted set of int IDs kept as compressed chunks
+     */
+    static final class PostingList {
+        Chunk[] chunks = new Chunk[1]; // sorted by high
+        int numChunks;
+        int size;
+
+        /**
+         * Index of the chunk for high, or -(insertion point + 1)
+         */
+        private int find(int high) {
+            if (numChunks > 0 && chunks[numChunks - 1].high == high) {
+                return numChunks - 1; // appends keep hitting the last chunk
+            }
+            int lo = 0;
+            int hi = numChunks - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (chunks[mid].high < high) {
+                    lo = mid + 1;
+                } else if (chunks[mid].high > high) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+
+        boolean contains(int id) {
+            int c = find(id >>> 16);
+            return c >= 0 && chunks[c].contains(id & 0xFFFF);
+        }
+
+        boolean add(int id) {
+            int c = find(id >>> 16);
+            if (c < 0) {
+                c = -c - 1;
+                if (numChunks == chunks.length) {
+                    chunks = Arrays.copyOf(chunks, 2 * numChunks);
+                }
+                System.arraycopy(chunks, c, chunks, c + 1, numChunks - c);
+                chunks[c] = new Chunk(id >>> 16);
+                numChunks++;
+            }
+            if (!chunks[c].add(id & 0xFFFF)) {
+                return false;
+            }
+            size++;
+            return true;
+        }
+
+        boolean remove(int id) {
+            int c = find(id >>> 16);
+            if (c < 0 || !chunks[c].remove(id & 0xFFFF)) {
+                return false;
+            }
+            size--;
+            if (chunks[c].cardinality == 0) {
+                System.arraycopy(chunks, c + 1, chunks, c, numChunks - c - 1);
+                chunks[--numChunks] = null;
+            }
+            return true;
+        }
+
+        /**
+         * IDs in ascending unsigned order (the chunk order)
+         */
+        void forEach(IntConsumer action) {
+            for (int c = 0; c < numChunks; c++) {
+                chunks[c].forEach(action);
+            }
+        }
+
+        /**
+         * IDs in both lists, ascending; only chunks present in both are visited
+         */
+        static void and(PostingList a, PostingList b, IntConsumer action) {
+            int i = 0;
+            int j = 0;
+            while (i < a.numChunks && j < b.numChunks) {
+                int left = a.chunks[i].high;
+                int right = b.chunks[j].high;
+                if (left < right) {
+                    i++;
+                } else if (left > right) {
+                    j++;
+                } else {
+                    Chunk.and(a.chunks[i++], b.chunks[j++], action);
+                }
+            }
+        }
+
+        long bytes() {
+            long bytes = 0;
+            for (int c = 0; c < numChunks; c++) {
+                bytes += chunks[c].bytes();
+            }
+            return bytes;
+        }
+    }
+
+    private static final long NO_SLOT = -1;
+
+    private final LongLongBTreeMap index; // key -> slot in lists
+    private PostingList[] lists = new PostingList[16];
+    private int[] freeSlots = new int[16];
+    private int numFree;
+    private int nextSlot;
+    private long size; // (key, id) pairs
+
+    /**
+     * @param minDegree - minimum degree of the key tree
+     */
+    public BTreeMultimap(int minDegree) {
+        this.index = new LongLongBTreeMap(minDegree, Long.MIN_VALUE, NO_SLOT);
+    }
+
+    /**
+     * Add id to key's postings
+     * @return false if the pair was already present
+     */
+    public boolean add(int key, int id) {
+        long slot = index.get(key);
+        PostingList list;
+        if (slot == NO_SLOT) {
+            slot = allocateSlot();
+            list = new PostingList();
+            lists[(int) slot] = list;
+            index.put(key, slot);
+        } else {
+            list = lists[(int) slot];
+        }
+        if (!list.add(id)) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove id from key's postings; the key goes away with its last ID
+     * @return false if the pair was not present
+     */
+    public boolean remove(int key, int id) {
+        long slot = index.get(key);
+        if (slot == NO_SLOT || !lists[(int) slot].remove(id)) {
+            return false;
+        }
+        size--;
+        if (lists[(int) slot].size == 0) {
+            index.remove(key);
+            lists[(int) slot] = null;
+            if (numFree == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, 2 * numFree);
+            }
+            freeSlots[numFree++] = (int) slot;
+        }
+        return true;
+    }
+
+    public boolean contains(int key, int id) {
+        PostingList list = postings(key);
+        return list != null && list.contains(id);
+    }
+
+    /**
+     * Number of IDs stored under key
+     */
+    public int count(int key) {
+        PostingList list = postings(key);
+        return (list == null) ? 0 : list.size;
+    }
+
+    /**
+     * Feed key's IDs in ascending order to action
+     */
+    public void forEach(int key, IntConsumer action) {
+        PostingList list = postings(key);
+        if (list != null) {
+            list.forEach(action);
+        }
+    }
+
+    /**
+     * Key's IDs in ascending order
+     */
+    public int[] get(int key) {
+        PostingList list = postings(key);
+        if (list == null) {
+            return new int[0];
+        }
+        int[] ids = new int[list.size];
+        int[] count = {0};
+        list.forEach(id -> ids[count[0]++] = id);
+        return ids;
+    }
+
+    /**
+     * IDs stored under both keys (an AND query), in ascending order
+     */
+    public int[] intersect(int keyA, int keyB) {
+        PostingList a = postings(keyA);
+        PostingList b = postings(keyB);
+        if (a == null || b == null) {
+            return new int[0];
+        }
+        int[] ids = new int[Math.min(a.size, b.size)];
+        int[] count = {0};
+        PostingList.and(a, b, id -> ids[count[0]++] = id);
+        return Arrays.copyOf(ids, count[0]);
+    }
+
+    /**
+     * Number of distinct keys
+     */
+    public int keyCount() {
+        return index.size();
+    }
+
+    /**
+     * Number of (key, id) pairs
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Bytes held by the posting list payloads (the key tree not included)
+     */
+    public long postingBytes() {
+        long bytes = 0;
+        for (int slot = 0; slot < nextSlot; slot++) {
+            if (lists[slot] != null) {
+                bytes += lists[slot].bytes();
+            }
+        }
+        return bytes;
+    }
+
+    private PostingList postings(int key) {
+        long slot = index.get(key);
+        return (slot == NO_SLOT) ? null : lists[(int) slot];
+    }
+
+    private int allocateSlot() {
+        if (numFree > 0) {
+            return freeSlots[--numFree];
+        }
+        if (nextSlot == lists.length) {
+            lists = Arrays.copyOf(lists, 2 * nextSlot);
+        }
+        return nextSlot++;
+    }
+
+    public static void main(String[] args) {
+        System.out.println("=== B-TREE MULTIMAP WITH POSTING LISTS ===");
+        BTreeMultimap byColor = new BTreeMultimap(16);
+        int[][] rows = {{1, 10}, {1, 11}, {2, 11}, {1, 70000}, {2, 70000}, {3, 12}, {2, 12}};
+        for (int[] row : rows) {
+            byColor.add(row[0], row[1]);
+        }
+        System.out.println("Key 1 -> " + Arrays.toString(byColor.get(1)) + ", key 2 -> " + Arrays.toString(byColor.get(2)));
+        System.out.println("Key 1 AND key 2 -> " + Arrays.toString(byColor.intersect(1, 2)));
+        byColor.remove(3, 12);
+        System.out.println("After removing (3, 12): keys = " + byColor.keyCount() + ", pairs = " + byColor.size());
+        System.out.println();
+
+        // Three indexed columns over 4M rows: status and priority have dense postings, city sparse ones
+        int rowCount = 4_000_000;
+        BTreeMultimap status = new BTreeMultimap(16);
+        BTreeMultimap priority = new BTreeMultimap(16);
+        BTreeMultimap city = new BTreeMultimap(16);
+        int[] statusOf = new int[rowCount];
+        int[] priorityOf = new int[rowCount];
+        int[] cityOf = new int[rowCount];
+        Random random = new Random(42);
+        for (int row = 0; row < rowCount; row++) {
+            statusOf[row] = random.nextInt(8);
+            priorityOf[row] = random.nextInt(4);
+            cityOf[row] = random.nextInt(5000);
+            status.add(statusOf[row], row);
+            priority.add(priorityOf[row], row);
+            city.add(cityOf[row], row);
+        }
+        System.out.printf("status index: %,d IDs in %,d bytes (%.2f bytes/ID; int[] needs 4)%n",
+                status.size(), status.postingBytes(), (double) status.postingBytes() / status.size());
+        System.out.printf("city index:   %,d IDs in %,d bytes (%.2f bytes/ID; int[] needs 4)%n",
+                city.size(), city.postingBytes(), (double) city.postingBytes() / city.size());
+
+        for (int round = 0; round < 3; round++) {
+            // status = 3 AND priority = 1: both dense, bitmap words ANDed
+            long start = System.nanoTime();
+            int denseHits = intersect(status.get(3), priority.get(1)).length;
+            long naiveNs = System.nanoTime() - start;
+            start = System.nanoTime();
+            int[] dense = andAcross(status, 3, priority, 1);
+            long denseNs = System.nanoTime() - start;
+
+            // status = 3 AND city = 17: the sparse side drives bit tests on the dense side
+            start = System.nanoTime();
+            int[] mixed = andAcross(status, 3, city, 17);
+            long mixedNs = System.nanoTime() - start;
+
+            int scanned = 0;
+            for (int row = 0; row < rowCount; row++) {
+                if (statusOf[row] == 3 && cityOf[row] == 17) {
+                    scanned++;
+                }
+            }
+            if (dense.length != denseHits || mixed.length != scanned) {
+                throw new AssertionError("Posting AND disagrees with the reference");
+            }
+            System.out.printf("dense AND: %,d IDs in %,d us (decode + merge: %,d us); dense AND sparse: %,d IDs in %,d us%n",
+                    dense.length, denseNs / 1000, naiveNs / 1000, mixed.length, mixedNs / 1000);
+        }
+    }
+
+    /**
+     * AND of postings from two different indexes over the same rows
+     */
+    private static int[] andAcross(BTreeMultimap left, int leftKey, BTreeMultimap right, int rightKey) {
+        PostingList a = left.postings(leftKey);
+        PostingList b = right.postings(rightKey);
+        int[] ids = new int[Math.min(a.size, b.size)];
+        int[] count = {0};
+        PostingList.and(a, b, id -> ids[count[0]++] = id);
+        return Arrays.copyOf(ids, count[0]);
+    }
+
+    /**
+     * Merge-intersection of two sorted arrays, the baseline without compressed containers
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Point-lookup throughput of BTree per intra-node search strategy
+ *
+ * Builds a tree of N even keys with bulkLoad for each minDegree in 8..256
+ * and times random lookups (about half of them misses) with every
+ * BTree.KeySearch strategy. VectorKeySearch is included when the program
+ * runs with --add-modules jdk.incubator.vector.
+ */
+public class BTreeSearchBenchmark {
+
+    private static final int KEYS = 4_000_000;
+    private static final int LOOKUPS = 5_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        String[] names = {"LINEAR", "BRANCH_FREE", "VECTOR"};
+        BTree.KeySearch[] strategies = {BTree.KeySearch.LINEAR, BTree.KeySearch.BRANCH_FREE, loadVectorSearch()};
+
+        int[] probes = new int[LOOKUPS];
+        Random random = new Random(42);
+        for (int i = 0; i < LOOKUPS; i++) {
+            probes[i] = random.nextInt(2 * KEYS);
+        }
+
+        System.out.printf("%-10s %-12s %16s%n", "minDegree", "strategy", "lookups/sec");
+        for (int t = 8; t <= 256; t *= 2) {
+            BTree tree = BTree.bulkLoad(t, IntStream.range(0, KEYS).map(i -> 2 * i), 0.9);
+            for (int s = 0; s < strategies.length; s++) {
+                if (strategies[s] == null) {
+                    continue;
+                }
+                tree.setKeySearch(strategies[s]);
+                System.out.printf("%-10d %-12s %,16.0f%n", t, names[s], measure(tree, probes, ROUNDS));
+            }
+        }
+    }
+
+    /**
+     * Lookups/sec of tree.search over probes: best of rounds, after one warm-up round
+     * Every round must find the same number of keys (this also keeps the loop from being optimized away).
+     */
+    static double measure(BTree tree, int[] probes, int rounds) {
+        double best = 0;
+        int expected = -1;
+        for (int round = 0; round <= rounds; round++) {
+            long start = System.nanoTime();
+            int found = 0;
+            for (int probe : probes) {
+                if (tree.search(probe)) {
+                    found++;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            if (expected >= 0 && found != expected) {
+                throw new IllegalStateException("Rounds disagree: " + found + " vs " + expected + " hits");
+            }
+            expected = found;
+            if (round > 0) {
+                best = Math.max(best, probes.length * 1e9 / elapsed);
+            }
+        }
+        return best;
+    }
+
+    private static BTree.KeySearch loadVectorSearch() {
+        try {
+            return (BTree.KeySearch) Class.forName("VectorKeySearch").getField("INSTANCE").get(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.out.println("VectorKeySearch unavailable (run with --add-modules jdk.incubator.vector)");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * LSM-Style Write Buffer in Front of a BTree
+ *
+ * Writes do not touch the BTree. They land in a memtable (a RedBlackTree
+ * mapping key -> PUT or TOMBSTONE), where the latest write to a key wins.
+ * Once the memtable holds flushThreshold keys it is frozen (a fresh one
+ * takes new writes) and merged into the BTree in key order:
+ *
+ * 1. Tombstones delete their keys from the tree, in ascending order
+ * 2. PUT keys go in with one BTree.insertAllDistinct batch, which routes
+ *    the sorted run down the tree in shared descents and skips keys the
+ *    tree already holds
+ *
+ * Random writes thus reach the BTree as sorted batches: fewer descents,
+ * better locality, and splits happen once per batch region instead of
+ * once per key. Repeated writes to hot keys are absorbed by the memtable
+ * and reach the tree once per flush. Reads check the memtable first (a hit
+ * there is the latest state, including deletes), then the tree, so they
+ * stay O(log n).
+ *
+ * The memtable is a pointer-based binary tree, so a buffered write costs
+ * about as much as one descent of a wide in-memory BTree. The buffer pays
+ * off when tree writes are expensive: small minDegree (deep trees with
+ * frequent splits) or trees whose nodes live in slower memory.
+ *
+ * Keys form a set. The BTree allows duplicates, so write to it only
+ * through this class once buffering starts.
+ */
+public class BufferedBTree {
+
+    private static final int ABSENT = 0;
+    private static final int PUT = 1;
+    private static final int TOMBSTONE = 2;
+
+    private final BTree tree;
+    private final int flushThreshold;
+    private RedBlackTree memtable = new RedBlackTree();
+    private long flushes;
+
+    /**
+     * @param tree - tree to buffer writes for (keys should be distinct)
+     * @param flushThreshold - memtable keys that trigger a merge into the tree
+     */
+    public BufferedBTree(BTree tree, int flushThreshold) {
+        if (flushThreshold < 1) {
+            throw new IllegalArgumentException("flushThreshold must be positive");
+        }
+        this.tree = tree;
+        this.flushThreshold = flushThreshold;
+    }
+
+    public void insert(int key) {
+        memtable.put(key, PUT);
+        if (memtable.size() >= flushThreshold) {
+            flush();
+        }
+    }
+
+    public void delete(int key) {
+        memtable.put(key, TOMBSTONE);
+        if (memtable.size() >= flushThreshold) {
+            flush();
+        }
+    }
+
+    public boolean search(int key) {
+        int state = memtable.get(key, ABSENT);
+        if (state != ABSENT) {
+            return state == PUT;
+        }
+        return tree.search(key);
+    }
+
+    /**
+     * Freeze the memtable and merge it into the tree
+     */
+    public void flush() {
+        if (memtable.isEmpty()) {
+            return;
+        }
+        RedBlackTree frozen = memtable;
+        memtable = new RedBlackTree();
+
+        int[] puts = new int[frozen.size()];
+        int[] count = {0};
+        frozen.forEach((key, state) -> {
+            if (state == TOMBSTONE) {
+                tree.delete(key);
+            } else {
+                puts[count[0]++] = key;
+            }
+        });
+        tree.insertAllDistinct(Arrays.copyOf(puts, count[0]));
+        flushes++;
+    }
+
+    /**
+     * Keys waiting in the memtable
+     */
+    public int bufferedKeys() {
+        return memtable.size();
+    }
+
+    public long flushes() {
+        return flushes;
+    }
+
+    public static void main(String[] args) {
+        System.out.println("=== LSM WRITE BUFFER OVER A B-TREE ===");
+        BufferedBTree buffered = new BufferedBTree(new BTree(3), 4);
+        for (int key : new int[]{50, 10, 40, 20, 30, 60}) {
+            buffered.insert(key);
+        }
+        buffered.delete(20);
+        buffered.delete(60);
+        System.out.println("Inserted 50 10 40 20 30 60, deleted 20 and 60 (threshold 4)");
+        System.out.println("Flushes: " + buffered.flushes() + ", still buffered: " + buffered.bufferedKeys());
+        System.out.println("search(20) = " + buffered.search(20) + ", search(30) = " + buffered.search(30)
+                + ", search(60) = " + buffered.search(60));
+        buffered.flush();
+        System.out.print("Tree after final flush: ");
+        buffered.tree.traverse();
+        System.out.println();
+
+        int n = 2_000_000;
+        Random random = new Random(42);
+
+        // Workload 1: every key written once, in random order
+        int[] unique = new int[n];
+        for (int i = 0; i < n; i++) {
+            unique[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = unique[i];
+            unique[i] = unique[j];
+            unique[j] = tmp;
+        }
+
+        // Workload 2: inserts and deletes concentrated on 50K hot keys
+        int[] hot = new int[n];
+        for (int i = 0; i < n; i++) {
+            int key = random.nextInt(50_000) * 10;
+            hot[i] = random.nextInt(4) == 0 ? ~key : key; // ~key marks a delete
+        }
+
+        for (int round = 0; round < 2; round++) {
+            System.out.printf("Round %d writes/sec (memtable threshold 64K):%n", round + 1);
+            for (int minDegree : new int[]{3, 32}) {
+                compare("unique keys, minDegree " + minDegree, minDegree, unique);
+                compare("hot keys,    minDegree " + minDegree, minDegree, hot);
+            }
+        }
+    }
+
+    /**
+     * Apply writes with set semantics directly and through a buffer; report writes/sec of each
+     */
+    private static void compare(String name, int minDegree, int[] writes) {
+        BTree direct = new BTree(minDegree);
+        long start = System.nanoTime();
+        for (int write : writes) {
+            if (write >= 0) {
+                if (!direct.search(write)) {
+                    direct.insert(write);
+                }
+            } else {
+                direct.delete(~write);
+            }
+        }
+        double directRate = writes.length / ((System.nanoTime() - start) / 1e9);
+
+        BTree tree = new BTree(minDegree);
+        BufferedBTree buffered = new BufferedBTree(tree, 64_000);
+        start = System.nanoTime();
+        for (int write : writes) {
+            if (write >= 0) {
+                buffered.insert(write);
+            } else {
+                buffered.delete(~write);
+            }
+        }
+        buffered.flush();
+        double bufferedRate = writes.length / ((System.nanoTime() - start) / 1e9);
+
+        if (direct.size() != tree.size()) {
+            throw new AssertionError("Paths disagree: " + direct.size() + " vs " + tree.size());
+        }
+        System.out.printf("  %s: direct %,12.0f   buffered %,12.0f%n", name, directRate, bufferedRate);
+    }
+}
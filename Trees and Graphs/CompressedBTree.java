@@ -0,0 +1,573 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * B+ Tree with Frame-of-Reference Compressed Nodes
+ *
+ * Each node stores its keys as (key - base) deltas, bit-packed into a
+ * long[] with just enough bits for the largest delta in that node:
+ *
+ *   base = first key, bits = width of (last key - base), packed = deltas
+ *
+ * Dense or clustered keys need only a few bits each, so a node of a fixed
+ * byte budget holds many more keys than an int[] node of the same size:
+ * higher fanout, lower height, fewer cache misses per lookup. Capacity is
+ * measured in bytes, not keys; a node splits when its encoding no longer
+ * fits nodeBytes.
+ *
+ * Searches never decode a whole node: the binary search compares the
+ * target delta with packed values extracted on the fly (a shift and a mask,
+ * plus a second word when a value straddles a boundary). Inserts and
+ * deletes decode the node, change it and re-encode it.
+ *
+ * A node that no longer fits splits where every piece fits. One key always
+ * fits and any subset of a node that fit still fits, so a node that gained
+ * one key can always be cut into at most three pieces: the cut nearest the
+ * middle is used when two pieces are enough.
+ *
+ * Keys are ints and form a set. Internal nodes hold separators (the first
+ * key of the right subtree), leaves hold all keys. After a delete a node is
+ * merged with a sibling when the two together need at most half a node (or
+ * one of them is empty); a merge only removes a separator from the parent,
+ * so the parent always still fits. The root collapses when it is left with
+ * a single child, so height shrinks under churn.
+ */
+public class CompressedBTree {
+
+    /**
+     * Node with bit-packed keys; children == null for leaves
+     */
+    static final class Node {
+        int base;          // frame of reference: the smallest key
+        int bits;          // bits per packed delta (0..32)
+        long[] packed;     // deltas key - base, little-endian bit order
+        int numKeys;
+        Node[] children;   // numKeys + 1 entries for internal nodes
+
+        boolean isLeaf() {
+            return children == null;
+        }
+
+        /**
+         * Delta of key i from base, as an unsigned value
+         */
+        long delta(int i) {
+            if (bits == 0) {
+                return 0;
+            }
+            long bitPos = (long) i * bits;
+            int word = (int) (bitPos >>> 6);
+            int offset = (int) (bitPos & 63);
+            long value = packed[word] >>> offset;
+            if (offset + bits > 64) {
+                value |= packed[word + 1] << (64 - offset);
+            }
+            return value & ((1L << bits) - 1);
+        }
+
+        int key(int i) {
+            return (int) (base + delta(i));
+        }
+
+        /**
+         * @return index of the first key >= key, or numKeys if none
+         */
+        int lowerBound(int key) {
+            if (numKeys == 0 || key <= base) {
+                return 0;
+            }
+            long target = (long) key - base;
+            int lo = 0;
+            int hi = numKeys;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (delta(mid) < target) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * @return index of the first key > key, or numKeys if none
+         */
+        int upperBound(int key) {
+            if (numKeys == 0 || key < base) {
+                return 0;
+            }
+            long target = (long) key - base;
+            int lo = 0;
+            int hi = numKeys;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (delta(mid) <= target) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        void decode(int[] out) {
+            decode(out, 0);
+        }
+
+        void decode(int[] out, int at) {
+            for (int i = 0; i < numKeys; i++) {
+                out[at + i] = key(i);
+            }
+        }
+
+        /**
+         * Pack sorted keys[from..to) into this node
+         */
+        void encode(int[] keys, int from, int to) {
+            int n = to - from;
+            numKeys = n;
+            base = n == 0 ? 0 : keys[from];
+            bits = bitsFor(keys, from, to);
+            packed = new long[wordsFor(n, bits)];
+            long bitPos = 0;
+            for (int i = from; i < to; i++, bitPos += bits) {
+                if (bits == 0) {
+                    break;
+                }
+                long value = ((long) keys[i] - base);
+                int word = (int) (bitPos >>> 6);
+                int offset = (int) (bitPos & 63);
+                packed[word] |= value << offset;
+                if (offset + bits > 64) {
+                    packed[word + 1] |= value >>> (64 - offset);
+                }
+            }
+        }
+    }
+
+    private final int nodeWords;   // byte budget of one node's packed keys, in longs
+    private final int maxKeys;     // hard cap so scratch arrays have a fixed size
+    private final int[] scratchKeys;
+    private final Node[] scratchChildren;
+    private Node root;
+    private int size;
+    private int height = 1;
+
+    // Result of the last split, handed from a child to its parent: splitCount new right
+    // siblings splitNodes[i], each with separator splitKeys[i]
+    private final int[] splitKeys;
+    private final Node[] splitNodes;
+    private int splitCount;
+    private boolean inserted;
+
+    /**
+     * @param nodeBytes - space for packed keys per node (e.g. 256 to compare with a 64-key int[] node)
+     */
+    public CompressedBTree(int nodeBytes) {
+        if (nodeBytes < 16) {
+            throw new IllegalArgumentException("nodeBytes must be at least 16");
+        }
+        this.nodeWords = nodeBytes / 8;
+        // n distinct keys need at least log2(n) bits each, so n <= nodeBits / 2 once n >= 3
+        this.maxKeys = Math.max(3, nodeWords * 64 / 2);
+        // A node that overflows holds at most maxKeys keys plus the separators of a split child
+        this.scratchKeys = new int[2 * maxKeys + 2];
+        this.scratchChildren = new Node[2 * maxKeys + 3];
+        this.splitKeys = new int[maxKeys + 2];
+        this.splitNodes = new Node[maxKeys + 2];
+        this.root = new Node();
+        root.encode(scratchKeys, 0, 0);
+    }
+
+    static int bitsFor(int[] keys, int from, int to) {
+        return bitsFor(to - from, keys[from], keys[Math.max(from, to - 1)]);
+    }
+
+    static int bitsFor(int numKeys, int first, int last) {
+        if (numKeys <= 1) {
+            return 0;
+        }
+        return 64 - Long.numberOfLeadingZeros((long) last - first);
+    }
+
+    static int wordsFor(int numKeys, int bits) {
+        return (int) (((long) numKeys * bits + 63) >>> 6);
+    }
+
+    private boolean fits(int[] keys, int from, int to) {
+        return to - from <= maxKeys && wordsFor(to - from, bitsFor(keys, from, to)) <= nodeWords;
+    }
+
+    /*
+     * SEARCH
+     */
+
+    public boolean search(int key) {
+        Node node = root;
+        while (!node.isLeaf()) {
+            node = node.children[node.upperBound(key)];
+        }
+        int i = node.lowerBound(key);
+        return i < node.numKeys && node.key(i) == key;
+    }
+
+    /*
+     * INSERT
+     */
+
+    /**
+     * @return true if the key was added, false if it was already present
+     */
+    public boolean insert(int key) {
+        inserted = false;
+        int added = insert(root, key);
+        while (added > 0) {
+            // The root split: a new root over the pieces (it may have to split as well)
+            System.arraycopy(splitKeys, 0, scratchKeys, 0, added);
+            scratchChildren[0] = root;
+            System.arraycopy(splitNodes, 0, scratchChildren, 1, added);
+            root = new Node();
+            added = store(root, added, scratchChildren);
+            height++;
+        }
+        if (inserted) {
+            size++;
+        }
+        return inserted;
+    }
+
+    /**
+     * Insert into the subtree at node
+     * @return the number of new right siblings of node (in splitNodes / splitKeys)
+     */
+    private int insert(Node node, int key) {
+        if (node.isLeaf()) {
+            int i = node.lowerBound(key);
+            if (i < node.numKeys && node.key(i) == key) {
+                return 0;
+            }
+            node.decode(scratchKeys);
+            System.arraycopy(scratchKeys, i, scratchKeys, i + 1, node.numKeys - i);
+            scratchKeys[i] = key;
+            inserted = true;
+            return store(node, node.numKeys + 1, null);
+        }
+
+        int c = node.upperBound(key);
+        int added = insert(node.children[c], key);
+        if (added == 0) {
+            return 0;
+        }
+
+        // Child split: add its separators at c.. and the new children at c + 1..
+        int n = node.numKeys;
+        node.decode(scratchKeys);
+        System.arraycopy(scratchKeys, c, scratchKeys, c + added, n - c);
+        System.arraycopy(splitKeys, 0, scratchKeys, c, added);
+        System.arraycopy(node.children, 0, scratchChildren, 0, c + 1);
+        System.arraycopy(splitNodes, 0, scratchChildren, c + 1, added);
+        System.arraycopy(node.children, c + 1, scratchChildren, c + 1 + added, n - c);
+        return store(node, n + added, scratchChildren);
+    }
+
+    /**
+     * Encode scratchKeys[0..n) (and children) into node, splitting it where every piece fits
+     * @return the number of new right siblings (in splitNodes / splitKeys)
+     */
+    private int store(Node node, int n, Node[] children) {
+        if (fits(scratchKeys, 0, n)) {
+            node.encode(scratchKeys, 0, n);
+            if (children != null) {
+                node.children = Arrays.copyOf(children, n + 1);
+            }
+            return 0;
+        }
+
+        // Internal nodes move each separator up, so piece i ends where piece i + 1 starts - 1
+        int gap = (children == null) ? 0 : 1;
+        int[] starts = new int[n + 1];
+        int pieces = 0;
+        int cut = twoWayCut(n, gap);
+        if (cut >= 0) {
+            starts[pieces++] = 0;
+            starts[pieces++] = cut + gap;
+        } else {
+            // Greedy maximal pieces: the fewest possible, at most three after a one-key change
+            int from = 0;
+            while (true) {
+                starts[pieces++] = from;
+                int to = Math.min(from + 1, n); // one key always fits
+                while (to < n && fits(scratchKeys, from, to + 1)) {
+                    to++;
+                }
+                if (to == n) {
+                    break;
+                }
+                from = to + gap;
+            }
+        }
+        starts[pieces] = n + gap;
+
+        for (int p = pieces - 1; p >= 0; p--) {
+            int from = starts[p];
+            int to = starts[p + 1] - gap;
+            Node piece = (p == 0) ? node : new Node();
+            piece.encode(scratchKeys, from, to);
+            if (children != null) {
+                piece.children = Arrays.copyOfRange(children, from, to + 1);
+            }
+            if (p > 0) {
+                // Leaf: the separator is the piece's first key, internal: the key before it
+                splitKeys[p - 1] = scratchKeys[from - gap];
+                splitNodes[p - 1] = piece;
+            }
+        }
+        return pieces - 1;
+    }
+
+    /**
+     * @return the cut nearest the middle where both pieces fit (the first key of the
+     *         right piece, or the separator moved up when gap = 1), or -1 if there is none
+     */
+    private int twoWayCut(int n, int gap) {
+        int mid = n / 2;
+        for (int d = 0; d <= n; d++) {
+            for (int cut : new int[]{mid - d, mid + d}) {
+                if (cut >= 1 && cut + gap <= n - 1
+                        && fits(scratchKeys, 0, cut) && fits(scratchKeys, cut + gap, n)) {
+                    return cut;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * DELETE
+     */
+
+    /**
+     * @return true if the key was present
+     */
+    public boolean delete(int key) {
+        if (!delete(root, key)) {
+            return false;
+        }
+        while (!root.isLeaf() && root.numKeys == 0) {
+            root = root.children[0];
+            height--;
+        }
+        size--;
+        return true;
+    }
+
+    private boolean delete(Node node, int key) {
+        if (node.isLeaf()) {
+            int i = node.lowerBound(key);
+            if (i == node.numKeys || node.key(i) != key) {
+                return false;
+            }
+            int n = node.numKeys;
+            node.decode(scratchKeys);
+            System.arraycopy(scratchKeys, i + 1, scratchKeys, i, n - i - 1);
+            node.encode(scratchKeys, 0, n - 1);
+            return true;
+        }
+
+        int c = node.upperBound(key);
+        if (!delete(node.children[c], key)) {
+            return false;
+        }
+        if (c > 0 && mergeIfSmall(node, c - 1)) {
+            return true;
+        }
+        if (c < node.numKeys) {
+            mergeIfSmall(node, c);
+        }
+        return true;
+    }
+
+    /**
+     * Merge children i and i + 1 of parent if together they need at most half a node,
+     * or one of them is empty and the result fits
+     */
+    private boolean mergeIfSmall(Node parent, int i) {
+        Node left = parent.children[i];
+        Node right = parent.children[i + 1];
+        boolean internal = !left.isLeaf();
+        int separator = parent.key(i);
+        int n = left.numKeys + right.numKeys + (internal ? 1 : 0);
+        int first = (left.numKeys > 0) ? left.base : internal ? separator : right.base;
+        int last = (right.numKeys > 0) ? right.key(right.numKeys - 1)
+                : internal ? separator : (left.numKeys > 0) ? left.key(left.numKeys - 1) : first;
+        int limit = (left.numKeys == 0 || right.numKeys == 0) ? nodeWords : nodeWords / 2;
+        if (n > maxKeys || wordsFor(n, bitsFor(n, first, last)) > limit) {
+            return false;
+        }
+
+        left.decode(scratchKeys);
+        int at = left.numKeys;
+        if (internal) {
+            scratchKeys[at++] = separator; // pulled down between the two halves
+            Node[] children = Arrays.copyOf(left.children, n + 1);
+            System.arraycopy(right.children, 0, children, left.numKeys + 1, right.numKeys + 1);
+            left.children = children;
+        }
+        right.decode(scratchKeys, at);
+        left.encode(scratchKeys, 0, n);
+
+        // The parent loses separator i and child i + 1: a subset of its keys, so it still fits
+        int m = parent.numKeys;
+        parent.decode(scratchKeys);
+        System.arraycopy(scratchKeys, i + 1, scratchKeys, i, m - i - 1);
+        parent.encode(scratchKeys, 0, m - 1);
+        Node[] children = new Node[m];
+        System.arraycopy(parent.children, 0, children, 0, i + 1);
+        System.arraycopy(parent.children, i + 2, children, i + 1, m - i - 1);
+        parent.children = children;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Average keys per leaf, i.e. the effective fanout of the leaf level
+     */
+    public double averageLeafKeys() {
+        long[] totals = new long[2]; // leaves, keys
+        countLeaves(root, totals);
+        return (double) totals[1] / totals[0];
+    }
+
+    /**
+     * Size of the largest packed key area in the tree; never more than nodeBytes
+     */
+    public int largestNodeBytes() {
+        return 8 * largestNodeWords(root);
+    }
+
+    private int largestNodeWords(Node node) {
+        int words = node.packed.length;
+        if (!node.isLeaf()) {
+            for (int i = 0; i <= node.numKeys; i++) {
+                words = Math.max(words, largestNodeWords(node.children[i]));
+            }
+        }
+        return words;
+    }
+
+    private void countLeaves(Node node, long[] totals) {
+        if (node.isLeaf()) {
+            totals[0]++;
+            totals[1] += node.numKeys;
+            return;
+        }
+        for (int i = 0; i <= node.numKeys; i++) {
+            countLeaves(node.children[i], totals);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        System.out.println("=== COMPRESSED B+ TREE (FRAME OF REFERENCE + BIT PACKING) ===");
+        CompressedBTree small = new CompressedBTree(16);
+        for (int i = 0; i < 40; i++) {
+            small.insert(1000 + (i * 7) % 40 * 3);
+        }
+        small.insert(999);
+        small.insert(5000);
+        System.out.println("Inserted " + small.size() + " keys into 16-byte nodes: height " + small.height()
+                + ", " + small.averageLeafKeys() + " keys/leaf");
+        System.out.println("search(1006) = " + small.search(1006) + ", search(1005) = " + small.search(1005));
+        small.insert(Integer.MIN_VALUE); // far-away keys widen their node's frame
+        small.insert(Integer.MAX_VALUE);
+        System.out.println("Largest node after adding MIN_VALUE and MAX_VALUE: " + small.largestNodeBytes() + " bytes");
+        if (small.largestNodeBytes() > 16) {
+            throw new AssertionError("Node over its byte budget");
+        }
+        small.delete(1006);
+        System.out.println("After delete(1006): search(1006) = " + small.search(1006) + ", size = " + small.size());
+        for (int i = 0; i < 40; i++) {
+            small.delete(1000 + i * 3);
+        }
+        System.out.println("After deleting the 1000s: " + small.size() + " keys, height " + small.height());
+        System.out.println();
+
+        // Dense, clustered keys: gaps of 1..4
+        int n = 2_000_000;
+        Random random = new Random(42);
+        int[] keys = new int[n];
+        for (int i = 1; i < n; i++) {
+            keys[i] = keys[i - 1] + 1 + random.nextInt(4);
+        }
+        int[] shuffled = keys.clone();
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = tmp;
+        }
+        int[] probes = new int[1_000_000];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = random.nextInt(keys[n - 1]);
+        }
+
+        // Both layouts use 256-byte key areas: 63 ints for BTree(32), packed deltas here
+        long before = usedHeap();
+        BTree plain = new BTree(32, BTree.KeySearch.BRANCH_FREE);
+        for (int key : shuffled) {
+            plain.insert(key);
+        }
+        long plainBytes = usedHeap() - before;
+
+        before = usedHeap();
+        CompressedBTree packed = new CompressedBTree(256);
+        for (int key : shuffled) {
+            packed.insert(key);
+        }
+        long packedBytes = usedHeap() - before;
+
+        System.out.printf("%,d clustered keys, 256-byte node key areas%n", n);
+        System.out.printf("BTree(32):           %6.1f MB, up to 63 keys/node%n", plainBytes / 1e6);
+        System.out.printf("CompressedBTree(256): %6.1f MB, %.0f keys/leaf on average, height %d%n",
+                packedBytes / 1e6, packed.averageLeafKeys(), packed.height());
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            int hits = 0;
+            for (int probe : probes) {
+                if (plain.search(probe)) {
+                    hits++;
+                }
+            }
+            double plainRate = probes.length / ((System.nanoTime() - start) / 1e9);
+
+            start = System.nanoTime();
+            int packedHits = 0;
+            for (int probe : probes) {
+                if (packed.search(probe)) {
+                    packedHits++;
+                }
+            }
+            double packedRate = probes.length / ((System.nanoTime() - start) / 1e9);
+            if (hits != packedHits) {
+                throw new AssertionError("Layouts disagree: " + hits + " vs " + packedHits);
+            }
+            System.out.printf("Round %d lookups/sec: BTree %,.0f, CompressedBTree %,.0f%n", round + 1, plainRate, packedRate);
+        }
+    }
+}
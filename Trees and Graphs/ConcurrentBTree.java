@@ -0,0 +1,634 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe B-Tree using Optimistic Lock Coupling (OLC)
+ *
+ * Same node layout and top-down algorithms as BTree (proactive splitChild
+ * on insert, proactive fill/borrow/merge on delete), but every node carries
+ * a version word instead of being guarded by one global lock:
+ *
+ *   version = [ counter ... | locked bit (2) | obsolete bit (1) ]
+ *
+ * Readers never write shared memory. They read a node's version, read the
+ * node, then re-check the version; if it changed (or was locked) somebody
+ * modified the node concurrently and the operation restarts from the root.
+ * A child's version is read before its parent is re-validated, so a split
+ * or merge that moved keys between the two reads is always detected.
+ *
+ * Writers descend optimistically the same way and only latch the nodes a
+ * change touches, by upgrading the version they read with a CAS:
+ * - leaf insert/delete       : the leaf
+ * - splitChild               : parent + full child
+ * - borrowFromPrev/Next/merge: parent + child + sibling
+ * Every structural change restarts the operation, and writers only ever
+ * try-lock (a failed CAS releases everything and restarts), so there is no
+ * lock ordering to get wrong and no deadlock. Nodes unlinked by merge are
+ * marked obsolete; the garbage collector reclaims them once no reader
+ * holds a reference, so no epoch-based reclamation is needed.
+ */
+public class ConcurrentBTree {
+
+    private static final VarHandle VERSION;
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(Node.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Node is a BTreeNode plus a version word
+     * keys/children are read without synchronization and only trusted
+     * after the version has been re-validated.
+     */
+    static final class Node {
+        final int[] keys;
+        final Node[] children; // null for leaves
+        final boolean isLeaf;
+        int numKeys;
+        volatile long version;
+
+        Node(int minDegree, boolean isLeaf) {
+            this.isLeaf = isLeaf;
+            this.keys = new int[2 * minDegree - 1];
+            this.children = isLeaf ? null : new Node[2 * minDegree];
+        }
+    }
+
+    private final int minDegree;
+    private final int maxKeys;
+    private final BTree.KeySearch keySearch;
+    private volatile Node root; // never null; an empty tree is an empty leaf
+
+    public ConcurrentBTree(int minDegree) {
+        this(minDegree, BTree.KeySearch.LINEAR);
+    }
+
+    public ConcurrentBTree(int minDegree, BTree.KeySearch keySearch) {
+        if (minDegree < 2) throw new IllegalArgumentException("minDegree must be at least 2");
+        this.minDegree = minDegree;
+        this.maxKeys = 2 * minDegree - 1;
+        this.keySearch = keySearch;
+        this.root = new Node(minDegree, true);
+    }
+
+    /*
+     * VERSION LOCK PRIMITIVES
+     */
+
+    /**
+     * @return the node's version, or -1 if it is locked or obsolete
+     */
+    private static long readLock(Node node) {
+        long v = node.version;
+        return (v & 3) == 0 ? v : -1;
+    }
+
+    /**
+     * Check that nothing changed the node since its version was read
+     * The acquire fence keeps the plain reads of keys/children before the re-read.
+     */
+    private static boolean validate(Node node, long v) {
+        VarHandle.acquireFence();
+        return node.version == v;
+    }
+
+    private static boolean upgrade(Node node, long v) {
+        return VERSION.compareAndSet(node, v, v + 2);
+    }
+
+    private static void unlock(Node node) {
+        node.version = node.version + 2;
+    }
+
+    private static void unlockObsolete(Node node) {
+        node.version = node.version + 3;
+    }
+
+    private int count(Node node) {
+        return Math.min(node.numKeys, maxKeys); // may be torn; never index past the array
+    }
+
+    /*
+     * SEARCH
+     */
+
+    /**
+     * Search for a key without taking any lock
+     * @return true if found, false otherwise
+     */
+    public boolean search(int key) {
+        restart:
+        while (true) {
+            // Re-check the root pointer after reading its version (root splits latch the old root)
+            Node node = root;
+            long v = readLock(node);
+            if (v < 0 || root != node) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            while (true) {
+                int n = count(node);
+                int i = keySearch.lowerBound(node.keys, n, key);
+                boolean found = i < n && node.keys[i] == key;
+                if (found || node.isLeaf) {
+                    if (!validate(node, v)) continue restart;
+                    return found;
+                }
+
+                Node child = node.children[i];
+                if (child == null) continue restart;
+                long cv = readLock(child);
+                if (cv < 0 || !validate(node, v)) continue restart;
+                node = child;
+                v = cv;
+            }
+        }
+    }
+
+    /*
+     * INSERT
+     */
+
+    /**
+     * Insert a key into the B-tree
+     * @param key - key to insert
+     */
+    public void insert(int key) {
+        restart:
+        while (true) {
+            // Re-check the root pointer after reading its version (root splits latch the old root)
+            Node node = root;
+            long v = readLock(node);
+            if (v < 0 || root != node) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            if (node.numKeys == maxKeys) {
+                splitRoot(node, v);
+                continue;
+            }
+
+            while (true) {
+                int n = count(node);
+                int i = keySearch.upperBound(node.keys, n, key);
+
+                if (node.isLeaf) {
+                    if (!upgrade(node, v)) continue restart;
+                    if (node.numKeys == maxKeys) {
+                        unlock(node); // filled up meanwhile; parent will split it on retry
+                        continue restart;
+                    }
+                    System.arraycopy(node.keys, i, node.keys, i + 1, node.numKeys - i);
+                    node.keys[i] = key;
+                    node.numKeys++;
+                    unlock(node);
+                    return;
+                }
+
+                Node child = node.children[i];
+                if (child == null) continue restart;
+                long cv = readLock(child);
+                if (cv < 0 || !validate(node, v)) continue restart;
+
+                if (child.numKeys == maxKeys) {
+                    // Proactive split: latch only this node and the full child
+                    if (!upgrade(node, v)) continue restart;
+                    if (!upgrade(child, cv)) {
+                        unlock(node);
+                        continue restart;
+                    }
+                    splitChild(node, i, child);
+                    unlock(child);
+                    unlock(node);
+                    continue restart;
+                }
+
+                node = child;
+                v = cv;
+            }
+        }
+    }
+
+    /**
+     * Grow the tree by one level; the old root is latched while the root pointer moves
+     */
+    private void splitRoot(Node oldRoot, long v) {
+        if (!upgrade(oldRoot, v)) {
+            return;
+        }
+        if (root != oldRoot || oldRoot.numKeys != maxKeys) {
+            unlock(oldRoot);
+            return;
+        }
+        Node newRoot = new Node(minDegree, false);
+        newRoot.children[0] = oldRoot;
+        splitChild(newRoot, 0, oldRoot);
+        root = newRoot;
+        unlock(oldRoot);
+    }
+
+    /**
+     * Split the full child of parent at position index (both latched by the caller)
+     */
+    private void splitChild(Node parent, int index, Node fullChild) {
+        int t = minDegree;
+        Node newChild = new Node(t, fullChild.isLeaf);
+        System.arraycopy(fullChild.keys, t, newChild.keys, 0, t - 1);
+        if (!fullChild.isLeaf) {
+            System.arraycopy(fullChild.children, t, newChild.children, 0, t);
+        }
+        newChild.numKeys = t - 1;
+        fullChild.numKeys = t - 1;
+
+        int n = parent.numKeys;
+        System.arraycopy(parent.children, index + 1, parent.children, index + 2, n - index);
+        parent.children[index + 1] = newChild;
+        System.arraycopy(parent.keys, index, parent.keys, index + 1, n - index);
+        parent.keys[index] = fullChild.keys[t - 1];
+        parent.numKeys = n + 1;
+    }
+
+    /*
+     * DELETE
+     */
+
+    /**
+     * Delete a key from the B-tree
+     * @param key - key to delete
+     */
+    public void delete(int key) {
+        while (true) {
+            Node node = root;
+            long v = readLock(node);
+            if (v >= 0 && root == node && tryDelete(node, v, key)) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * One optimistic attempt; false means "restart from the root"
+     * Like BTreeNode.delete, every child we step into has at least minDegree
+     * keys (it is fixed first if not), so removing one key never underflows.
+     */
+    private boolean tryDelete(Node node, long v, int key) {
+        int t = minDegree;
+        while (true) {
+            int n = count(node);
+            int i = keySearch.lowerBound(node.keys, n, key);
+            boolean found = i < n && node.keys[i] == key;
+
+            if (node.isLeaf) {
+                if (!found) {
+                    return validate(node, v);
+                }
+                if (!upgrade(node, v)) return false;
+                System.arraycopy(node.keys, i + 1, node.keys, i, node.numKeys - i - 1);
+                node.numKeys--;
+                unlock(node);
+                return true;
+            }
+
+            if (found) {
+                return removeFromNonLeaf(node, v, i);
+            }
+
+            Node child = node.children[i];
+            if (child == null) return false;
+            long cv = readLock(child);
+            if (cv < 0 || !validate(node, v)) return false;
+
+            if (child.numKeys < t) {
+                fill(node, v, i, child, cv);
+                return false; // restart after any restructuring
+            }
+            node = child;
+            v = cv;
+        }
+    }
+
+    /**
+     * Key found at index idx of an internal node
+     * Replace it with its predecessor/successor (taken from a leaf with spare
+     * keys) or merge the two children around it and let the retry go deeper.
+     */
+    private boolean removeFromNonLeaf(Node node, long v, int idx) {
+        int t = minDegree;
+        Node left = node.children[idx];
+        Node right = node.children[idx + 1];
+        if (left == null || right == null) return false;
+        long lv = readLock(left);
+        long rv = readLock(right);
+        if (lv < 0 || rv < 0 || !validate(node, v)) return false;
+
+        if (left.numKeys >= t) {
+            return replaceFromLeaf(node, v, idx, left, lv, true);
+        }
+        if (right.numKeys >= t) {
+            return replaceFromLeaf(node, v, idx, right, rv, false);
+        }
+
+        // Both children have minDegree-1 keys: merge them around the key
+        if (!upgrade(node, v)) return false;
+        if (!upgrade(left, lv)) {
+            unlock(node);
+            return false;
+        }
+        if (!upgrade(right, rv)) {
+            unlock(left);
+            unlock(node);
+            return false;
+        }
+        merge(node, idx, left, right);
+        unlockObsolete(right);
+        unlock(left);
+        unlockNodeOrCollapseRoot(node, left);
+        return false; // key now lives in the merged child; retry finds it there
+    }
+
+    /**
+     * Walk from start to the rightmost (predecessor) or leftmost (successor)
+     * leaf, fixing any minimal node on the way, then move that leaf's edge
+     * key into node.keys[idx]. Only node and the leaf are latched for the swap.
+     */
+    private boolean replaceFromLeaf(Node node, long v, int idx, Node start, long sv, boolean predecessor) {
+        Node cur = start;
+        long cv = sv;
+        while (!cur.isLeaf) {
+            int n = count(cur);
+            int childIdx = predecessor ? n : 0;
+            Node child = cur.children[childIdx];
+            if (child == null) return false;
+            long chv = readLock(child);
+            if (chv < 0 || !validate(cur, cv)) return false;
+            if (child.numKeys < minDegree) {
+                fill(cur, cv, childIdx, child, chv);
+                return false;
+            }
+            cur = child;
+            cv = chv;
+        }
+
+        if (!upgrade(node, v)) return false;
+        if (!upgrade(cur, cv)) {
+            unlock(node);
+            return false;
+        }
+        if (predecessor) {
+            node.keys[idx] = cur.keys[cur.numKeys - 1];
+        } else {
+            node.keys[idx] = cur.keys[0];
+            System.arraycopy(cur.keys, 1, cur.keys, 0, cur.numKeys - 1);
+        }
+        cur.numKeys--;
+        unlock(cur);
+        unlock(node);
+        return true;
+    }
+
+    /**
+     * Give the minimal child at idx an extra key: borrow from a sibling with
+     * spare keys or merge with it. Latches parent, child and that sibling.
+     * The left sibling is used when there is one, otherwise the right one.
+     */
+    private void fill(Node parent, long pv, int idx, Node child, long cv) {
+        int siblingIdx = idx > 0 ? idx - 1 : idx + 1;
+        Node sibling = parent.children[siblingIdx];
+        if (sibling == null) return;
+        long sv = readLock(sibling);
+        if (sv < 0) return;
+
+        if (!upgrade(parent, pv)) return;
+        if (!upgrade(child, cv)) {
+            unlock(parent);
+            return;
+        }
+        if (!upgrade(sibling, sv)) {
+            unlock(child);
+            unlock(parent);
+            return;
+        }
+
+        if (sibling.numKeys >= minDegree) {
+            if (siblingIdx < idx) {
+                borrowFromPrev(parent, idx, child, sibling);
+            } else {
+                borrowFromNext(parent, idx, child, sibling);
+            }
+            unlock(sibling);
+            unlock(child);
+            unlock(parent);
+        } else if (siblingIdx < idx) {
+            merge(parent, siblingIdx, sibling, child);
+            unlockObsolete(child);
+            unlock(sibling);
+            unlockNodeOrCollapseRoot(parent, sibling);
+        } else {
+            merge(parent, idx, child, sibling);
+            unlockObsolete(sibling);
+            unlock(child);
+            unlockNodeOrCollapseRoot(parent, child);
+        }
+    }
+
+    /**
+     * If a merge emptied the root, its only child becomes the root
+     */
+    private void unlockNodeOrCollapseRoot(Node node, Node onlyChild) {
+        if (node.numKeys == 0 && node == root) {
+            root = onlyChild;
+            unlockObsolete(node);
+        } else {
+            unlock(node);
+        }
+    }
+
+    private void borrowFromPrev(Node parent, int idx, Node child, Node sibling) {
+        System.arraycopy(child.keys, 0, child.keys, 1, child.numKeys);
+        if (!child.isLeaf) {
+            System.arraycopy(child.children, 0, child.children, 1, child.numKeys + 1);
+            child.children[0] = sibling.children[sibling.numKeys];
+        }
+        child.keys[0] = parent.keys[idx - 1];
+        parent.keys[idx - 1] = sibling.keys[sibling.numKeys - 1];
+        child.numKeys++;
+        sibling.numKeys--;
+    }
+
+    private void borrowFromNext(Node parent, int idx, Node child, Node sibling) {
+        child.keys[child.numKeys] = parent.keys[idx];
+        if (!child.isLeaf) {
+            child.children[child.numKeys + 1] = sibling.children[0];
+            System.arraycopy(sibling.children, 1, sibling.children, 0, sibling.numKeys);
+        }
+        parent.keys[idx] = sibling.keys[0];
+        System.arraycopy(sibling.keys, 1, sibling.keys, 0, sibling.numKeys - 1);
+        child.numKeys++;
+        sibling.numKeys--;
+    }
+
+    /**
+     * Merge right (child idx+1) into left (child idx) around parent.keys[idx]
+     */
+    private void merge(Node parent, int idx, Node left, Node right) {
+        int t = minDegree;
+        left.keys[t - 1] = parent.keys[idx];
+        System.arraycopy(right.keys, 0, left.keys, t, right.numKeys);
+        if (!left.isLeaf) {
+            System.arraycopy(right.children, 0, left.children, t, right.numKeys + 1);
+        }
+        left.numKeys += right.numKeys + 1;
+
+        int n = parent.numKeys;
+        System.arraycopy(parent.keys, idx + 1, parent.keys, idx, n - idx - 1);
+        System.arraycopy(parent.children, idx + 2, parent.children, idx + 1, n - idx - 1);
+        parent.children[n] = null;
+        parent.numKeys = n - 1;
+    }
+
+    /**
+     * Traverse and print the B-tree (only meaningful while no writer is active)
+     */
+    public void traverse() {
+        traverse(root);
+        System.out.println();
+    }
+
+    private void traverse(Node node) {
+        int i;
+        for (i = 0; i < node.numKeys; i++) {
+            if (!node.isLeaf) {
+                traverse(node.children[i]);
+            }
+            System.out.print(node.keys[i] + " ");
+        }
+        if (!node.isLeaf) {
+            traverse(node.children[i]);
+        }
+    }
+
+    /*
+     * DEMONSTRATION / SCALING CHECK
+     */
+
+    private interface Index {
+        boolean search(int key);
+        void insert(int key);
+        void delete(int key);
+    }
+
+    /**
+     * Run a mixed workload on several threads and return operations per second
+     * Each thread owns the keys congruent to its id, so the final contents are known.
+     */
+    private static double run(Index index, int threads, int opsPerThread, int readPercent) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            int id = w;
+            workers[w] = new Thread(() -> {
+                Random random = new Random(id);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int op = 0; op < opsPerThread; op++) {
+                    int key = random.nextInt(1 << 20) * threads + id;
+                    int dice = random.nextInt(100);
+                    if (dice < readPercent) {
+                        index.search(key);
+                    } else if (dice < readPercent + (100 - readPercent) / 2) {
+                        index.insert(key);
+                    } else {
+                        index.delete(key);
+                    }
+                }
+            });
+            workers[w].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return (long) threads * opsPerThread * 1e9 / (System.nanoTime() - begin);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("=== CONCURRENT B-TREE (OPTIMISTIC LOCK COUPLING) ===");
+
+        ConcurrentBTree demo = new ConcurrentBTree(3);
+        for (int key : new int[]{10, 20, 5, 6, 12, 30, 7, 17}) {
+            demo.insert(key);
+        }
+        demo.delete(6);
+        System.out.print("Tree after inserts and deleting 6: ");
+        demo.traverse();
+
+        // Correctness under contention: 8 threads inserting disjoint keys, deleting the odd ones
+        ConcurrentBTree shared = new ConcurrentBTree(8);
+        int threads = 8;
+        int perThread = 20_000;
+        Thread[] workers = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            int id = w;
+            workers[w] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    shared.insert(i * threads + id);
+                }
+                for (int i = 1; i < perThread; i += 2) {
+                    shared.delete(i * threads + id);
+                }
+            });
+            workers[w].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        AtomicLong wrong = new AtomicLong();
+        for (int k = 0; k < perThread * threads; k++) {
+            if (shared.search(k) != ((k / threads) % 2 == 0)) {
+                wrong.incrementAndGet();
+            }
+        }
+        System.out.println("Concurrent insert/delete check: " + (wrong.get() == 0 ? "OK" : wrong.get() + " wrong keys"));
+
+        // Throughput versus a single global lock around BTree
+        int ops = 500_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%-8s %-10s %18s %18s%n", "threads", "reads", "OLC ops/sec", "locked ops/sec");
+        for (int readPercent : new int[]{100, 90, 50}) {
+            for (int t = 1; t <= cores; t *= 2) {
+                ConcurrentBTree olc = new ConcurrentBTree(16);
+                BTree plain = new BTree(16);
+                Object lock = new Object();
+                for (int k = 0; k < 200_000; k++) {
+                    olc.insert(k * 7);
+                    plain.insert(k * 7);
+                }
+                double olcOps = run(new Index() {
+                    public boolean search(int key) { return olc.search(key); }
+                    public void insert(int key) { olc.insert(key); }
+                    public void delete(int key) { olc.delete(key); }
+                }, t, ops, readPercent);
+                double lockedOps = run(new Index() {
+                    public boolean search(int key) { synchronized (lock) { return plain.search(key); } }
+                    public void insert(int key) { synchronized (lock) { plain.insert(key); } }
+                    public void delete(int key) { synchronized (lock) { plain.delete(key); } }
+                }, t, ops, readPercent);
+                System.out.printf("%-8d %-10s %,18.0f %,18.0f%n", t, readPercent + "%", olcOps, lockedOps);
+            }
+        }
+    }
+}
@@ -0,0 +1,565 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable BTree: write-ahead log with group commit, checkpoints and recovery
+ *
+ * Every insert/delete is applied to an in-memory BTree and appended as a
+ * logical record to a write-ahead log (WAL); the call returns once the
+ * record is on disk. Durability is never per operation:
+ *
+ * 1. Group commit - a single flusher thread writes all records appended
+ *    since its last write with one write() + one fsync, then wakes every
+ *    caller covered by that batch. It can linger groupCommitMicros after
+ *    the first record so more callers join the batch.
+ * 2. Checkpoints - every checkpointEveryRecords records (or on demand)
+ *    the flusher starts a new log segment, writes the tree's keys to a
+ *    checkpoint file (temp file + fsync + atomic rename) and deletes the
+ *    segments the checkpoint covers.
+ * 3. Recovery - open() bulk-loads the last checkpoint and replays only the
+ *    records after its LSN, so recovery time is bounded by the checkpoint
+ *    interval. A torn record at the end of the log (crash mid-write) fails
+ *    its CRC and is cut off.
+ *
+ * Files in the directory:
+ *   checkpoint           [magic][lsn][count][keys...][crc]
+ *   wal-<firstLsn>.log   records of [lsn:8][op:1][key:4][crc:4]
+ *
+ * Because logging is logical, a crash in the middle of splitChild or merge
+ * can never leave a torn tree: the tree is rebuilt from the checkpoint and
+ * the operations are re-executed.
+ */
+public class DurableBTree implements Closeable {
+
+    private static final int RECORD_SIZE = 17;
+    private static final int RECORD_BODY = 13; // bytes covered by the record CRC
+    private static final byte OP_INSERT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final int CHECKPOINT_MAGIC = 0x434B5054; // "CKPT"
+    private static final double RECOVERY_FILL_FACTOR = 0.75;
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path dir;
+    private final int minDegree;
+    private final long groupCommitNanos;
+    private final long checkpointEveryRecords;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Condition progress = lock.newCondition(); // durable LSN advanced, buffer space freed, checkpoint done
+    private final CRC32C recordCrc = new CRC32C();
+
+    // Guarded by lock
+    private final BTree tree;
+    private ByteBuffer pending;          // records waiting for the next batch
+    private ByteBuffer flushing;         // batch being written by the flusher
+    private long nextLsn;
+    private long durableLsn;
+    private long recordsSinceCheckpoint;
+    private long checkpointsRequested;
+    private long checkpointsTaken;
+    private long checkpointsDone;
+    private boolean closed;
+    private Throwable failure;
+    private long batches;
+
+    // Owned by the flusher thread
+    private FileChannel segment;
+    private long segmentStart;
+    private final Thread flusher;
+
+    private DurableBTree(Path dir, int minDegree, BTree tree, long nextLsn, long groupCommitMicros,
+                         int maxGroupRecords, long checkpointEveryRecords) throws IOException {
+        this.dir = dir;
+        this.minDegree = minDegree;
+        this.tree = tree;
+        this.nextLsn = nextLsn;
+        this.durableLsn = nextLsn - 1;
+        this.groupCommitNanos = groupCommitMicros * 1000;
+        this.checkpointEveryRecords = checkpointEveryRecords;
+        this.pending = ByteBuffer.allocate(maxGroupRecords * RECORD_SIZE);
+        this.flushing = ByteBuffer.allocate(maxGroupRecords * RECORD_SIZE);
+
+        this.segmentStart = nextLsn;
+        this.segment = FileChannel.open(segmentPath(nextLsn), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segment.position(segment.size());
+        syncDirectory();
+
+        this.flusher = new Thread(this::flushLoop, "btree-wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Open a durable tree in dir, recovering from its checkpoint and log
+     *
+     * @param dir - directory holding the checkpoint and log segments (created if missing)
+     * @param minDegree - minimum degree of the in-memory tree
+     * @param groupCommitMicros - how long the flusher waits for more records before an fsync (0 = never waits)
+     * @param maxGroupRecords - records per batch; writers block while a full batch is being written
+     * @param checkpointEveryRecords - log records between automatic checkpoints
+     */
+    public static DurableBTree open(Path dir, int minDegree, long groupCommitMicros,
+                                    int maxGroupRecords, long checkpointEveryRecords) throws IOException {
+        if (maxGroupRecords < 1 || checkpointEveryRecords < 1) {
+            throw new IllegalArgumentException("maxGroupRecords and checkpointEveryRecords must be positive");
+        }
+        Files.createDirectories(dir);
+
+        // 1. Start from the last checkpoint
+        long checkpointLsn = 0;
+        BTree tree;
+        Path checkpoint = dir.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint)) {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(checkpoint));
+            if (buf.remaining() < 20 || buf.getInt(0) != CHECKPOINT_MAGIC) {
+                throw new IOException("Corrupt checkpoint: " + checkpoint);
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buf.array(), 0, buf.limit() - 4);
+            if ((int) crc.getValue() != buf.getInt(buf.limit() - 4)) {
+                throw new IOException("Checkpoint checksum mismatch: " + checkpoint);
+            }
+            buf.position(4);
+            checkpointLsn = buf.getLong();
+            int[] keys = new int[buf.getInt()];
+            buf.asIntBuffer().get(keys);
+            tree = BTree.bulkLoad(minDegree, keys, RECOVERY_FILL_FACTOR);
+        } else {
+            tree = new BTree(minDegree);
+        }
+
+        // 2. Replay log records newer than the checkpoint
+        List<Long> starts = segmentStarts(dir);
+        long lastLsn = checkpointLsn;
+        CRC32C crc = new CRC32C();
+        for (int s = 0; s < starts.size(); s++) {
+            Path path = dir.resolve("wal-" + starts.get(s) + ".log");
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+            int valid = 0;
+            while (buf.remaining() >= RECORD_SIZE) {
+                int at = buf.position();
+                crc.reset();
+                crc.update(buf.array(), at, RECORD_BODY);
+                long lsn = buf.getLong();
+                byte op = buf.get();
+                int key = buf.getInt();
+                if ((int) crc.getValue() != buf.getInt()) {
+                    break;
+                }
+                if (lsn > checkpointLsn) {
+                    if (lsn != lastLsn + 1) {
+                        throw new IOException("Gap in log before LSN " + lsn + " in " + path);
+                    }
+                    if (op == OP_INSERT) {
+                        tree.insert(key);
+                    } else {
+                        tree.delete(key);
+                    }
+                    lastLsn = lsn;
+                }
+                valid = buf.position();
+            }
+            if (valid < buf.limit()) {
+                if (s != starts.size() - 1) {
+                    throw new IOException("Corrupt record in the middle of the log: " + path);
+                }
+                // Torn tail from a crash mid-write: drop it
+                try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    ch.truncate(valid);
+                    ch.force(true);
+                }
+            }
+        }
+
+        return new DurableBTree(dir, minDegree, tree, lastLsn + 1, groupCommitMicros,
+                maxGroupRecords, checkpointEveryRecords);
+    }
+
+    private static List<Long> segmentStarts(Path dir) throws IOException {
+        List<Long> starts = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "wal-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                starts.add(Long.parseLong(name.substring(4, name.length() - 4)));
+            }
+        }
+        Collections.sort(starts);
+        return starts;
+    }
+
+    private Path segmentPath(long firstLsn) {
+        return dir.resolve("wal-" + firstLsn + ".log");
+    }
+
+    /**
+     * fsync the directory itself, so created and renamed files survive a power loss
+     * (fsync of a file only covers its contents, not its directory entry)
+     */
+    private void syncDirectory() throws IOException {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        }
+    }
+
+    /*
+     * OPERATIONS
+     */
+
+    /**
+     * Insert a key; returns once the insert is durable
+     */
+    public void insert(int key) throws IOException {
+        awaitDurable(append(OP_INSERT, key));
+    }
+
+    /**
+     * Delete a key; returns once the delete is durable
+     */
+    public void delete(int key) throws IOException {
+        awaitDurable(append(OP_DELETE, key));
+    }
+
+    /**
+     * Search the in-memory tree (may observe writes whose commit is still in flight)
+     */
+    public boolean search(int key) {
+        lock.lock();
+        try {
+            return tree.search(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take a checkpoint now and wait for it to be on disk
+     */
+    public void checkpoint() throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            long ticket = ++checkpointsRequested;
+            workAvailable.signal();
+            while (checkpointsDone < ticket) {
+                checkFailure();
+                progress.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Apply the operation and queue its log record
+     * Tree order and log order match because both happen under the lock.
+     */
+    private long append(byte op, int key) throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            while (pending.remaining() < RECORD_SIZE) {
+                workAvailable.signal();
+                progress.awaitUninterruptibly();
+                checkOpen();
+            }
+            if (op == OP_INSERT) {
+                tree.insert(key);
+            } else {
+                tree.delete(key);
+            }
+
+            long lsn = nextLsn++;
+            int start = pending.position();
+            pending.putLong(lsn).put(op).putInt(key);
+            recordCrc.reset();
+            recordCrc.update(pending.array(), start, RECORD_BODY);
+            pending.putInt((int) recordCrc.getValue());
+            recordsSinceCheckpoint++;
+            workAvailable.signal();
+            return lsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitDurable(long lsn) throws IOException {
+        lock.lock();
+        try {
+            while (durableLsn < lsn) {
+                checkFailure();
+                progress.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        checkFailure();
+        if (closed) {
+            throw new IllegalStateException("DurableBTree is closed");
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log failed", failure);
+        }
+    }
+
+    /*
+     * FLUSHER THREAD
+     */
+
+    /**
+     * Any failure, not only an IOException, is recorded and wakes every waiter,
+     * so writers fail instead of waiting forever on a dead flusher
+     */
+    private void flushLoop() {
+        try {
+            flushBatches();
+        } catch (Throwable e) {
+            lock.lock();
+            try {
+                failure = e;
+                progress.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void flushBatches() throws IOException {
+        while (true) {
+            long upto;
+            BTree.Snapshot snapshot = null;
+            long snapshotTicket = 0;
+
+            lock.lock();
+            try {
+                while (pending.position() == 0 && checkpointsRequested == checkpointsTaken && !closed) {
+                    workAvailable.awaitUninterruptibly();
+                }
+                if (pending.position() == 0 && checkpointsRequested == checkpointsTaken) {
+                    return; // closed and fully drained
+                }
+
+                // Group commit: let more writers join this batch
+                long wait = groupCommitNanos;
+                while (wait > 0 && pending.position() > 0 && pending.remaining() >= RECORD_SIZE && !closed) {
+                    try {
+                        wait = workAvailable.awaitNanos(wait);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+
+                ByteBuffer batch = pending;
+                pending = flushing;
+                flushing = batch;
+                upto = nextLsn - 1;
+                progress.signalAll(); // space for blocked writers
+
+                if (checkpointsRequested > checkpointsTaken || recordsSinceCheckpoint >= checkpointEveryRecords) {
+                    // O(1) copy-on-write snapshot; keys are read after the lock is released
+                    snapshot = tree.snapshot();
+                    snapshotTicket = checkpointsRequested;
+                    checkpointsTaken = checkpointsRequested;
+                    recordsSinceCheckpoint = 0;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            flushing.flip();
+            if (flushing.hasRemaining()) {
+                while (flushing.hasRemaining()) {
+                    segment.write(flushing);
+                }
+                segment.force(false); // one fsync for the whole batch
+            }
+            flushing.clear();
+
+            lock.lock();
+            try {
+                durableLsn = upto;
+                batches++;
+                progress.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            if (snapshot != null) {
+                writeCheckpoint(snapshot.stream(Integer.MIN_VALUE, Integer.MAX_VALUE).toArray(), upto);
+                lock.lock();
+                try {
+                    checkpointsDone = snapshotTicket;
+                    progress.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Rotate to a new segment, persist the snapshot as of lsn, then drop covered segments
+     * A crash at any step leaves either the old checkpoint plus all segments,
+     * or the new checkpoint plus segments that are at worst redundant.
+     */
+    private void writeCheckpoint(int[] keys, long lsn) throws IOException {
+        if (segmentStart != lsn + 1) {
+            FileChannel next = FileChannel.open(segmentPath(lsn + 1), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            segment.close();
+            segment = next;
+            segmentStart = lsn + 1;
+            syncDirectory();
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(16 + 4 * keys.length + 4);
+        buf.putInt(CHECKPOINT_MAGIC).putLong(lsn).putInt(keys.length);
+        buf.asIntBuffer().put(keys);
+        buf.position(16 + 4 * keys.length);
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue());
+        buf.flip();
+
+        Path tmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(); // the rename must be on disk before the segments it covers are gone
+
+        for (long start : segmentStarts(dir)) {
+            if (start < segmentStart) {
+                Files.deleteIfExists(segmentPath(start));
+            }
+        }
+    }
+
+    /**
+     * Flush everything still queued, stop the flusher and close the log
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.close();
+        checkFailure();
+    }
+
+    /**
+     * Number of fsync batches so far (records / batches = average group size)
+     */
+    public long batches() {
+        lock.lock();
+        try {
+            return batches;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long lastLsn() {
+        lock.lock();
+        try {
+            return nextLsn - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("durable-btree");
+        System.out.println("=== DURABLE B-TREE (WAL + GROUP COMMIT) ===");
+
+        // Many writer threads: their records share fsyncs
+        int threads = 16;
+        int perThread = 2_000;
+        try (DurableBTree tree = DurableBTree.open(dir, 16, 200, 4096, 10_000)) {
+            Thread[] writers = new Thread[threads];
+            long start = System.nanoTime();
+            for (int w = 0; w < threads; w++) {
+                int id = w;
+                writers[w] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < perThread; i++) {
+                            tree.insert(i * threads + id);
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                writers[w].start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d durable inserts in %.2fs (%,.0f/sec), %d fsync batches%n",
+                    threads * perThread, seconds, threads * perThread / seconds, tree.batches());
+
+            for (int k = 0; k < threads * perThread; k += 2) {
+                tree.delete(k);
+            }
+            System.out.println("Deleted the even keys; last LSN = " + tree.lastLsn());
+        }
+
+        // Simulate a crash that tore the last record in half
+        List<Long> starts = segmentStarts(dir);
+        Path lastSegment = dir.resolve("wal-" + starts.get(starts.size() - 1) + ".log");
+        Files.write(lastSegment, new byte[]{1, 2, 3, 4, 5, 6, 7}, StandardOpenOption.APPEND);
+
+        long begin = System.nanoTime();
+        try (DurableBTree recovered = DurableBTree.open(dir, 16, 200, 4096, 10_000)) {
+            int present = 0;
+            for (int k = 0; k < threads * perThread; k++) {
+                if (recovered.search(k)) {
+                    present++;
+                }
+            }
+            System.out.printf("Recovered in %.1f ms: %d keys present (expected %d), last LSN = %d%n",
+                    (System.nanoTime() - begin) / 1e6, present, threads * perThread / 2, recovered.lastLsn());
+        }
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,371 @@
+/*External-memory Min Heap: a bounded in-memory heap that spills sorted runs to disk and k-way merges them back*/
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ExternalMinHeap implements Closeable {
+    private static final int DEFAULT_MAX_RUNS = 64;
+
+    private final IntMinHeap memory;      // newest elements, at most spillThreshold of them
+    private final int spillThreshold;
+    private final int bufferBytes;        // per run read buffer and the spill write buffer
+    private final Path tempDir;
+    private final int maxRuns;            // open runs before the smallest half is merged into one
+    private final ByteBuffer writeBuffer;
+
+    private Run[] runs = new Run[8];      // by run id; null slots are free
+    private final IndexedMinHeap heads = new IndexedMinHeap(); // run id -> current head value
+    private long size;
+    private long spills;
+    private long bytesWritten;
+
+    //One sorted run file, read sequentially through its own buffer
+    private static final class Run {
+        final Path file;
+        final FileChannel channel;
+        final ByteBuffer buffer;
+        long next;      // file index of the next value to read
+        long remaining; // values not yet moved into head
+        int head;
+
+        //Reads count values starting at value index first; head is loaded by the first advance()
+        Run(Path file, long first, long count, int bufferBytes) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+            this.buffer.limit(0);
+            this.next = first;
+            this.remaining = count;
+            channel.position(4 * first);
+        }
+
+        //Independent reader over the values this run has not yet returned, head included
+        Run reader(int bufferBytes) throws IOException {
+            Run copy = new Run(file, next - 1, remaining + 1, bufferBytes);
+            copy.advance();
+            return copy;
+        }
+
+        //Moves the next value into head; false once the run is exhausted
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // fill the whole buffer so every refill ends on an int boundary
+                }
+                buffer.flip();
+            }
+            head = buffer.getInt();
+            next++;
+            remaining--;
+            return true;
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * @param spillThreshold - elements kept in memory before a sorted run is written out
+     * @param bufferBytes - size of each run's read buffer (and of the write buffer)
+     * @param tempDir - directory for run files
+     */
+    public ExternalMinHeap(int spillThreshold, int bufferBytes, Path tempDir) {
+        this(spillThreshold, bufferBytes, tempDir, DEFAULT_MAX_RUNS);
+    }
+
+    public ExternalMinHeap(int spillThreshold, int bufferBytes, Path tempDir, int maxRuns) {
+        if (spillThreshold < 1) throw new IllegalArgumentException("spillThreshold must be positive");
+        if (bufferBytes < 4) throw new IllegalArgumentException("bufferBytes must hold at least one int");
+        if (maxRuns < 2) throw new IllegalArgumentException("maxRuns must be at least 2");
+        this.spillThreshold = spillThreshold;
+        this.bufferBytes = bufferBytes & ~3; // whole ints only
+        this.tempDir = tempDir;
+        this.maxRuns = maxRuns;
+        this.memory = new IntMinHeap(Math.min(spillThreshold, 1 << 16), 4);
+        this.writeBuffer = ByteBuffer.allocateDirect(this.bufferBytes);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    //Sorted runs currently on disk
+    public int runs() {
+        return heads.size();
+    }
+
+    public long spills() {
+        return spills;
+    }
+
+    //Bytes written to run files, including rewrites by run merges
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    public void insert(int value) throws IOException { //Time Complexity: O(log M) amortized, M = spillThreshold
+        if (memory.size() == spillThreshold) {
+            spill();
+        }
+        memory.insert(value);
+        size++;
+    }
+
+    public int peek() {
+        if (size == 0) throw new IllegalStateException("Heap is empty");
+        if (heads.isEmpty() || (!memory.isEmpty() && memory.peek() <= heads.priorityOf(heads.peekMinId()))) {
+            return memory.peek();
+        }
+        return heads.priorityOf(heads.peekMinId());
+    }
+
+    public int extractMin() throws IOException { //Time Complexity: O(log M + log R), one buffered read per bufferBytes
+        if (size == 0) throw new IllegalStateException("Heap is empty");
+        size--;
+        if (heads.isEmpty() || (!memory.isEmpty() && memory.peek() <= heads.priorityOf(heads.peekMinId()))) {
+            return memory.extractMin();
+        }
+        int id = heads.extractMinId();
+        Run run = runs[id];
+        int min = run.head;
+        if (run.advance()) {
+            heads.insertOrDecrease(id, run.head);
+        } else {
+            run.delete(); // exhausted
+            runs[id] = null;
+        }
+        return min;
+    }
+
+    //Writes the in-memory heap to a new run file. memory is cleared only once the run is
+    //readable, so a failing disk leaves the heap exactly as it was (and no stray file)
+    private void spill() throws IOException {
+        int[] sorted = memory.toArray();
+        Arrays.sort(sorted);
+        Path file = Files.createTempFile(tempDir, "minheap-run-", ".bin");
+        try {
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                writeBuffer.clear();
+                for (int value : sorted) {
+                    if (!writeBuffer.hasRemaining()) {
+                        flush(out);
+                    }
+                    writeBuffer.putInt(value);
+                }
+                flush(out);
+            }
+            addRun(file, sorted.length);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        memory.clear();
+        spills++;
+        if (heads.size() >= maxRuns) {
+            mergeSmallestRuns();
+        }
+    }
+
+    private void flush(FileChannel out) throws IOException {
+        writeBuffer.flip();
+        bytesWritten += writeBuffer.remaining();
+        while (writeBuffer.hasRemaining()) {
+            out.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    private void addRun(Path file, long count) throws IOException {
+        int id = 0;
+        while (id < runs.length && runs[id] != null) {
+            id++;
+        }
+        if (id == runs.length) {
+            runs = Arrays.copyOf(runs, 2 * runs.length);
+        }
+        Run run = new Run(file, 0, count, bufferBytes);
+        try {
+            run.advance();
+        } catch (IOException e) {
+            run.close();
+            throw e;
+        }
+        runs[id] = run;
+        heads.insertOrDecrease(id, run.head);
+    }
+
+    //Merges the smaller half of the runs into one, so open buffers stay bounded by maxRuns
+    //and each element is rewritten O(log_{maxRuns} (n / spillThreshold)) times (tiered, as in an LSM tree).
+    //The merge reads through separate readers and the inputs are retired only after the merged
+    //run is in place; if it fails, the inputs are untouched and the next spill tries again.
+    private void mergeSmallestRuns() throws IOException {
+        int[] ids = new int[heads.size()];
+        int n = 0;
+        for (int id = 0; id < runs.length; id++) {
+            if (runs[id] != null) {
+                ids[n++] = id;
+            }
+        }
+        Integer[] bySize = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            bySize[i] = ids[i];
+        }
+        Arrays.sort(bySize, (a, b) -> Long.compare(runs[a].remaining, runs[b].remaining));
+        int[] inputs = new int[n / 2 + 1];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = bySize[i];
+        }
+
+        Run[] readers = new Run[runs.length];
+        IndexedMinHeap merging = new IndexedMinHeap(runs.length);
+        Path file = null;
+        long count = 0;
+        try {
+            for (int id : inputs) {
+                readers[id] = runs[id].reader(bufferBytes);
+                merging.insertOrDecrease(id, readers[id].head);
+                count += runs[id].remaining + 1; // + the head already read
+            }
+            file = Files.createTempFile(tempDir, "minheap-run-", ".bin");
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                writeBuffer.clear();
+                while (!merging.isEmpty()) {
+                    int id = merging.extractMinId();
+                    Run reader = readers[id];
+                    if (!writeBuffer.hasRemaining()) {
+                        flush(out);
+                    }
+                    writeBuffer.putInt(reader.head);
+                    if (reader.advance()) {
+                        merging.insertOrDecrease(id, reader.head);
+                    }
+                }
+                flush(out);
+            }
+            addRun(file, count); // the inputs still hold their slots, so it gets a fresh one
+            file = null;
+            for (int id : inputs) {
+                Run input = runs[id];
+                heads.remove(id);
+                runs[id] = null;
+                input.delete();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+            throw e;
+        } finally {
+            for (Run reader : readers) {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+        }
+    }
+
+    //Deletes every run file; the heap is empty afterwards
+    @Override
+    public void close() throws IOException {
+        for (int id = 0; id < runs.length; id++) {
+            if (runs[id] != null) {
+                runs[id].delete();
+                runs[id] = null;
+            }
+        }
+        while (!heads.isEmpty()) {
+            heads.extractMinId();
+        }
+        while (!memory.isEmpty()) {
+            memory.extractMin();
+        }
+        size = 0;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("external-minheap");
+        System.out.println("=== EXTERNAL-MEMORY MIN HEAP ===");
+        try (ExternalMinHeap heap = new ExternalMinHeap(4, 64, dir, 3)) {
+            int[] values = {42, 7, 19, 3, 88, 61, 25, 14, 9, 70, 33, 5, 50};
+            for (int value : values) {
+                heap.insert(value);
+            }
+            System.out.println("Inserted " + Arrays.toString(values) + " (threshold 4, max 3 runs)");
+            System.out.println("Spills: " + heap.spills() + ", runs on disk: " + heap.runs() + ", peek: " + heap.peek());
+            System.out.print("extractMin order: ");
+            while (!heap.isEmpty()) {
+                System.out.print(heap.extractMin() + " ");
+            }
+            System.out.println();
+        }
+        System.out.println();
+
+        // Random values through a plain IntMinHeap and through heaps with shrinking memory budgets
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 20_000_000;
+        Random random = new Random(42);
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextInt();
+        }
+
+        long start = System.nanoTime();
+        IntMinHeap inMemory = new IntMinHeap(n, 4);
+        for (int value : values) {
+            inMemory.insert(value);
+        }
+        long checksum = 0;
+        while (!inMemory.isEmpty()) {
+            checksum = checksum * 31 + inMemory.extractMin();
+        }
+        inMemory = null;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%,d inserts + extractMins, buffer 64 KB per run%n", n);
+        System.out.printf("%-22s %14s %8s %12s %14s%n", "memory", "ops/sec", "spills", "MB written", "peak MB");
+        System.out.printf("%-22s %,14.0f %8s %12s %,14.1f%n", "all (IntMinHeap)", 2 * n / seconds, "-", "-", n * 4 / 1e6);
+
+        for (int threshold : new int[]{n / 4, n / 64, n / 1024}) {
+            start = System.nanoTime();
+            long external = 0;
+            long spills;
+            long written;
+            try (ExternalMinHeap heap = new ExternalMinHeap(threshold, 64 * 1024, dir)) {
+                for (int value : values) {
+                    heap.insert(value);
+                }
+                spills = heap.spills();
+                written = heap.bytesWritten();
+                while (!heap.isEmpty()) {
+                    external = external * 31 + heap.extractMin();
+                }
+            }
+            seconds = (System.nanoTime() - start) / 1e9;
+            if (external != checksum) {
+                throw new AssertionError("External order differs from the in-memory heap");
+            }
+            double peakMb = (threshold * 8.0 + DEFAULT_MAX_RUNS * 64 * 1024) / 1e6; // heap + its copy while spilling
+            System.out.printf("%-22s %,14.0f %8d %,12.1f %,14.1f%n", "1/" + (n / threshold) + " (" + threshold + ")",
+                    2 * n / seconds, spills, written / 1e6, peakMb);
+        }
+        Files.deleteIfExists(dir);
+    }
+}
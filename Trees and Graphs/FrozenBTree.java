@@ -0,0 +1,203 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Frozen B+ Tree: an Immutable, Pointer-Free Flat Image of a BTree
+ *
+ * Built by BTree.freeze() for read-only phases. All keys live in one int[]:
+ *
+ *   [ top layer | ... | internal layers | leaf layer = all keys in sorted order ]
+ *
+ * Every node is a block of B = 16 ints (one 64-byte cache line) and the
+ * layers are stored breadth-first (Eytzinger order of nodes), so the
+ * children of block k are blocks k*(B+1) .. k*(B+1)+B of the next layer:
+ * no child pointers, and every step of a search touches exactly one cache
+ * line. Separator i of a block is the smallest key under child i+1; unused
+ * slots hold Integer.MAX_VALUE.
+ *
+ * Because the leaf layer is the sorted key array itself, the leaf position
+ * a search ends on is the key's rank, select is one array read and range
+ * scans are sequential reads.
+ *
+ * Node size is fixed to the cache line, so there is no minDegree to tune;
+ * the layout gives one cache miss per level at every level of the memory
+ * hierarchy (17-way fanout). A fully cache-oblivious van Emde Boas order
+ * would also help with pages, at the cost of much more index arithmetic.
+ */
+public class FrozenBTree {
+
+    private static final int B = 16; // keys per block = one cache line of ints
+
+    private final int[] layout;
+    private final int[] layerOffset; // start of each layer in layout; layer 0 = leaves
+    private final int height;        // number of layers
+    private final int size;
+
+    /**
+     * @param sorted - keys in non-decreasing order (copied into the leaf layer; the caller keeps its array)
+     */
+    FrozenBTree(int[] sorted) {
+        this.size = sorted.length;
+
+        // Blocks per layer, from the leaves up until one block remains
+        int[] blocks = new int[32];
+        blocks[0] = Math.max(1, (size + B - 1) / B);
+        int layers = 1;
+        while (blocks[layers - 1] > 1) {
+            blocks[layers] = (blocks[layers - 1] + B) / (B + 1);
+            layers++;
+        }
+        this.height = layers;
+
+        // Top layer first, leaves last
+        this.layerOffset = new int[layers];
+        int offset = 0;
+        for (int h = layers - 1; h >= 0; h--) {
+            layerOffset[h] = offset;
+            offset += blocks[h] * B;
+        }
+        this.layout = new int[offset];
+        Arrays.fill(layout, Integer.MAX_VALUE);
+        System.arraycopy(sorted, 0, layout, layerOffset[0], size);
+
+        // Separator i of block k on layer h is the first key of the leftmost leaf under child k*(B+1)+i+1
+        long leavesPerChild = 1; // leaf blocks under one node of layer h-1
+        for (int h = 1; h < layers; h++) {
+            for (int k = 0; k < blocks[h]; k++) {
+                for (int i = 0; i < B; i++) {
+                    long child = (long) k * (B + 1) + i + 1;
+                    long firstKey = child * leavesPerChild * B;
+                    if (child < blocks[h - 1] && firstKey < size) {
+                        layout[layerOffset[h] + k * B + i] = sorted[(int) firstKey];
+                    }
+                }
+            }
+            leavesPerChild *= B + 1;
+        }
+    }
+
+    /**
+     * Position of the first key >= key in sorted order (= number of keys < key)
+     */
+    private int lowerBound(int key) {
+        int k = 0;
+        for (int h = height - 1; h > 0; h--) {
+            int base = layerOffset[h] + k * B;
+            int i = 0;
+            for (int j = 0; j < B; j++) {
+                i += (layout[base + j] < key) ? 1 : 0; // no data-dependent branch
+            }
+            k = k * (B + 1) + i;
+        }
+        int base = layerOffset[0] + k * B;
+        int i = 0;
+        for (int j = 0; j < B; j++) {
+            i += (layout[base + j] < key) ? 1 : 0;
+        }
+        return Math.min(k * B + i, size);
+    }
+
+    public boolean search(int key) {
+        int pos = lowerBound(key);
+        return pos < size && layout[layerOffset[0] + pos] == key;
+    }
+
+    /**
+     * Number of keys strictly less than key
+     */
+    public int rank(int key) {
+        return lowerBound(key);
+    }
+
+    /**
+     * The k-th smallest key, counting from 0
+     */
+    public int select(int k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("k = " + k + ", size = " + size);
+        }
+        return layout[layerOffset[0] + k];
+    }
+
+    /**
+     * Number of keys k with lo <= k <= hi
+     */
+    public int countRange(int lo, int hi) {
+        return (lo > hi) ? 0 : upperBound(hi) - lowerBound(lo);
+    }
+
+    private int upperBound(int key) {
+        return (key == Integer.MAX_VALUE) ? size : lowerBound(key + 1);
+    }
+
+    /**
+     * Keys in [lo, hi] in ascending order; a sequential read of the leaf layer
+     */
+    public IntStream stream(int lo, int hi) {
+        if (lo > hi) {
+            return IntStream.empty();
+        }
+        return Arrays.stream(layout, layerOffset[0] + lowerBound(lo), layerOffset[0] + upperBound(hi));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public static void main(String[] args) {
+        System.out.println("=== FROZEN B+ TREE (FLAT, POINTER-FREE) ===");
+        BTree tree = new BTree(3);
+        for (int key = 1; key <= 100; key++) {
+            tree.insert(3 * key);
+        }
+        FrozenBTree frozen = tree.freeze();
+        System.out.println("Froze 100 keys 3, 6, ..., 300");
+        System.out.println("search(150) = " + frozen.search(150) + ", search(151) = " + frozen.search(151));
+        System.out.println("rank(150) = " + frozen.rank(150) + ", select(49) = " + frozen.select(49)
+                + ", countRange(10, 40) = " + frozen.countRange(10, 40));
+        System.out.print("Keys in [10, 40]: ");
+        frozen.stream(10, 40).forEach(k -> System.out.print(k + " "));
+        System.out.println();
+        System.out.println();
+
+        // Lookups at sizes that fit L1/L2, L3 and only main memory
+        Random random = new Random(42);
+        int lookups = 2_000_000;
+        System.out.printf("%-12s %18s %18s%n", "keys", "BTree(16) /sec", "frozen /sec");
+        for (int n : new int[]{4_000, 400_000, 8_000_000}) {
+            BTree pointerTree = BTree.bulkLoad(16, IntStream.range(0, n).map(i -> 2 * i), 0.9);
+            FrozenBTree flat = pointerTree.freeze();
+            int[] probes = new int[lookups];
+            for (int i = 0; i < lookups; i++) {
+                probes[i] = random.nextInt(2 * n);
+            }
+
+            double pointerRate = 0;
+            double flatRate = 0;
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                int pointerHits = 0;
+                for (int probe : probes) {
+                    if (pointerTree.search(probe)) {
+                        pointerHits++;
+                    }
+                }
+                pointerRate = Math.max(pointerRate, lookups * 1e9 / (System.nanoTime() - start));
+
+                start = System.nanoTime();
+                int flatHits = 0;
+                for (int probe : probes) {
+                    if (flat.search(probe)) {
+                        flatHits++;
+                    }
+                }
+                flatRate = Math.max(flatRate, lookups * 1e9 / (System.nanoTime() - start));
+                if (pointerHits != flatHits) {
+                    throw new AssertionError("Layouts disagree: " + pointerHits + " vs " + flatHits);
+                }
+            }
+            System.out.printf("%,-12d %,18.0f %,18.0f%n", n, pointerRate, flatRate);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.Random;
+
+/**
+ * insert / extractMin throughput of d-ary heaps by arity and size
+ *
+ * For each size N, inserts N random values and then extracts all of them,
+ * for arity 2, 4, 8 and 16, with IntMinHeap (int[]) and, up to
+ * BOXED_LIMIT elements, MinHeap (ArrayList<Integer>). Sizes default to
+ * 1M and 10M; pass others as arguments, e.g. for 100M elements:
+ *
+ *   java -Xmx2g HeapArityBenchmark 1000000 10000000 100000000
+ */
+public class HeapArityBenchmark {
+
+    private static final int[] ARITIES = {2, 4, 8, 16};
+    private static final int BOXED_LIMIT = 10_000_000;
+
+    public static void main(String[] args) {
+        int[] sizes = {1_000_000, 10_000_000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("%-12s %-12s %6s %16s %16s%n", "size", "heap", "arity", "insert/sec", "extractMin/sec");
+        for (int size : sizes) {
+            Random random = new Random(42);
+            int[] values = new int[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = random.nextInt();
+            }
+            for (int arity : ARITIES) {
+                IntMinHeap heap = new IntMinHeap(size, arity);
+                long start = System.nanoTime();
+                for (int value : values) {
+                    heap.insert(value);
+                }
+                double inserts = rate(size, start);
+                start = System.nanoTime();
+                int previous = Integer.MIN_VALUE;
+                for (int i = 0; i < size; i++) {
+                    int min = heap.extractMin();
+                    if (min < previous) {
+                        throw new IllegalStateException("Out of order");
+                    }
+                    previous = min;
+                }
+                System.out.printf("%,-12d %-12s %6d %,16.0f %,16.0f%n", size, "IntMinHeap", arity, inserts, rate(size, start));
+            }
+            if (size <= BOXED_LIMIT) {
+                for (int arity : ARITIES) {
+                    MinHeap heap = new MinHeap(arity);
+                    long start = System.nanoTime();
+                    for (int value : values) {
+                        heap.insert(value);
+                    }
+                    double inserts = rate(size, start);
+                    start = System.nanoTime();
+                    int previous = Integer.MIN_VALUE;
+                    for (int i = 0; i < size; i++) {
+                        int min = heap.extractMin();
+                        if (min < previous) {
+                            throw new IllegalStateException("Out of order");
+                        }
+                        previous = min;
+                    }
+                    System.out.printf("%,-12d %-12s %6d %,16.0f %,16.0f%n", size, "MinHeap", arity, inserts, rate(size, start));
+                }
+            }
+            System.out.println();
+        }
+    }
+
+    private static double rate(long operations, long start) {
+        return operations / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,208 @@
+/*Indexed Min Heap: priorities keyed by external int ids, with O(log n) decrease-key and remove by id*/
+import java.util.Arrays;
+import java.util.Random;
+
+public class IndexedMinHeap {
+    private int[] heap;     // heap[i] = id stored at heap position i
+    private int[] position; // position[id] = index of id in heap, or -1 if absent
+    private int[] priority; // priority[id], valid while id is in the heap
+    private int size;
+
+    public IndexedMinHeap() {
+        this(16);
+    }
+
+    //ids below idCapacity need no resizing; larger ids grow the tables on demand
+    public IndexedMinHeap(int idCapacity) {
+        int capacity = Math.max(1, idCapacity);
+        heap = new int[capacity];
+        position = new int[capacity];
+        priority = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    private static int parent(int i) {
+        return (i - 1) / 2;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int id) { //Time Complexity: O(1)
+        return id >= 0 && id < position.length && position[id] >= 0;
+    }
+
+    //Priority of an id in the heap
+    public int priorityOf(int id) {
+        if (!contains(id)) throw new IllegalArgumentException("id " + id + " is not in the heap");
+        return priority[id];
+    }
+
+    //Inserts id, or lowers its priority if it is already present and the new one is smaller.
+    //Returns false when id was present with a priority <= the given one (nothing changes).
+    public boolean insertOrDecrease(int id, int newPriority) { //Time Complexity: O(log n)
+        if (id < 0) throw new IllegalArgumentException("ids must be non-negative");
+        if (id >= position.length) {
+            growIds(id);
+        }
+        int i = position[id];
+        if (i >= 0) {
+            if (newPriority >= priority[id]) {
+                return false;
+            }
+            priority[id] = newPriority;
+            siftUp(i, id);
+            return true;
+        }
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * size);
+        }
+        priority[id] = newPriority;
+        siftUp(size++, id);
+        return true;
+    }
+
+    public int peekMinId() {
+        if (size == 0) throw new IllegalStateException("Heap is empty");
+        return heap[0];
+    }
+
+    //Removes the id with the smallest priority and returns it (read its priority first with priorityOf if needed)
+    public int extractMinId() { //Time Complexity: O(log n)
+        if (size == 0) throw new IllegalStateException("Heap is empty");
+        int min = heap[0];
+        removeAt(0);
+        return min;
+    }
+
+    //Removes id if present; returns false if it was not in the heap
+    public boolean remove(int id) { //Time Complexity: O(log n)
+        if (!contains(id)) {
+            return false;
+        }
+        removeAt(position[id]);
+        return true;
+    }
+
+    private void removeAt(int i) {
+        int removed = heap[i];
+        position[removed] = -1;
+        int last = heap[--size];
+        if (i == size) {
+            return;
+        }
+        // The last id fills the hole and moves whichever way the heap order needs
+        if (i > 0 && priority[last] < priority[heap[parent(i)]]) {
+            siftUp(i, last);
+        } else {
+            siftDown(i, last);
+        }
+    }
+
+    //Moves id up from index i; every move updates the position map
+    private void siftUp(int i, int id) {
+        int p = priority[id];
+        while (i > 0) {
+            int up = parent(i);
+            int parentId = heap[up];
+            if (priority[parentId] <= p) {
+                break;
+            }
+            heap[i] = parentId;
+            position[parentId] = i;
+            i = up;
+        }
+        heap[i] = id;
+        position[id] = i;
+    }
+
+    private void siftDown(int i, int id) {
+        int p = priority[id];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && priority[heap[right]] < priority[heap[child]]) {
+                child = right;
+            }
+            int childId = heap[child];
+            if (p <= priority[childId]) {
+                break;
+            }
+            heap[i] = childId;
+            position[childId] = i;
+            i = child;
+        }
+        heap[i] = id;
+        position[id] = i;
+    }
+
+    private void growIds(int id) {
+        int capacity = Math.max(id + 1, 2 * position.length);
+        int old = position.length;
+        position = Arrays.copyOf(position, capacity);
+        Arrays.fill(position, old, capacity, -1);
+        priority = Arrays.copyOf(priority, capacity);
+    }
+
+    public static void main(String[] args) {
+        IndexedMinHeap tasks = new IndexedMinHeap();
+        // Task ids with deadlines
+        tasks.insertOrDecrease(7, 50);
+        tasks.insertOrDecrease(3, 20);
+        tasks.insertOrDecrease(9, 40);
+        tasks.insertOrDecrease(1, 30);
+        System.out.println("Next task: " + tasks.peekMinId() + " (deadline " + tasks.priorityOf(tasks.peekMinId()) + ")");
+        tasks.insertOrDecrease(9, 10); // deadline moved up
+        tasks.insertOrDecrease(1, 35); // later deadline: ignored
+        tasks.remove(3);               // cancelled
+        System.out.println("contains(3) = " + tasks.contains(3) + ", priorityOf(1) = " + tasks.priorityOf(1));
+        System.out.print("Run order:");
+        while (!tasks.isEmpty()) {
+            System.out.print(" " + tasks.extractMinId());
+        }
+        System.out.println();
+
+        // Dijkstra on a random graph: one heap entry per vertex, decreased in place
+        int vertices = 200_000;
+        int edgesPerVertex = 8;
+        Random random = new Random(42);
+        int[][] targets = new int[vertices][edgesPerVertex];
+        int[][] weights = new int[vertices][edgesPerVertex];
+        for (int v = 0; v < vertices; v++) {
+            for (int e = 0; e < edgesPerVertex; e++) {
+                targets[v][e] = random.nextInt(vertices);
+                weights[v][e] = 1 + random.nextInt(1000);
+            }
+        }
+        int[] distance = new int[vertices];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        distance[0] = 0;
+        IndexedMinHeap frontier = new IndexedMinHeap(vertices);
+        frontier.insertOrDecrease(0, 0);
+        int decreases = 0;
+        long start = System.nanoTime();
+        while (!frontier.isEmpty()) {
+            int current = frontier.extractMinId();
+            for (int e = 0; e < edgesPerVertex; e++) {
+                int next = targets[current][e];
+                int candidate = distance[current] + weights[current][e];
+                if (candidate < distance[next]) {
+                    if (distance[next] != Integer.MAX_VALUE) {
+                        decreases++;
+                    }
+                    distance[next] = candidate;
+                    frontier.insertOrDecrease(next, candidate);
+                }
+            }
+        }
+        long reached = Arrays.stream(distance).filter(d -> d != Integer.MAX_VALUE).count();
+        System.out.printf("Dijkstra over %,d vertices: %,d reached, %,d decrease-keys, %d ms%n",
+                vertices, reached, decreases, (System.nanoTime() - start) / 1_000_000);
+    }
+}
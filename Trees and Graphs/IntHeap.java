@@ -0,0 +1,14 @@
+/*Common interface of the int min-heaps (MinHeap, IntMinHeap, PairingHeap), so callers can swap implementations*/
+public interface IntHeap {
+    void insert(int value);
+
+    //Removes and returns the smallest value; throws IllegalStateException when empty
+    int extractMin();
+
+    //Smallest value without removing it; throws IllegalStateException when empty
+    int peek();
+
+    int size();
+
+    boolean isEmpty();
+}
@@ -0,0 +1,215 @@
+/*Implementation of a d-ary Min Heap on a growable int[] (no boxing)*/
+import java.util.Arrays;
+
+public class IntMinHeap implements IntHeap {
+    private int[] heap;
+    private int size;
+    private final int arity; // children per node, stored contiguously at arity*i+1 .. arity*i+arity
+
+    public IntMinHeap() {
+        this(16);
+    }
+
+    public IntMinHeap(int initialCapacity) {
+        this(initialCapacity, 2);
+    }
+
+    //arity 4 or 8 halves or thirds the levels an extractMin walks on large heaps (see MinHeap)
+    public IntMinHeap(int initialCapacity, int arity) {
+        if (arity < 2) throw new IllegalArgumentException("arity must be at least 2");
+        this.arity = arity;
+        heap = new int[Math.max(1, initialCapacity)];
+    }
+
+    private int parent(int i) {
+        return (i - 1) / arity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int peek() {
+        if (size == 0) throw new IllegalStateException("Heap is empty");
+        return heap[0];
+    }
+
+    public void insert(int value) { //Time Complexity: O(log n)
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * size);
+        }
+        siftUp(size++, value);
+    }
+
+    public int extractMin() { //Time Complexity: O(log n)
+        if (size == 0) throw new IllegalStateException("Heap is empty");
+        int min = heap[0];
+        int last = heap[--size];
+        if (size > 0) {
+            siftDown(0, last);
+        }
+        return min;
+    }
+
+    //Moves value up from index i; parents slide down into the hole instead of being swapped
+    private void siftUp(int i, int value) {
+        while (i > 0) {
+            int p = parent(i);
+            if (heap[p] <= value) {
+                break;
+            }
+            heap[i] = heap[p];
+            i = p;
+        }
+        heap[i] = value;
+    }
+
+    //Iterative heapify: moves value down from index i, pulling the smallest child up into the hole
+    private void siftDown(int i, int value) {
+        int lastParent = (size < 2) ? -1 : parent(size - 1); // nodes up to here have at least one child
+        while (i <= lastParent) {
+            int first = arity * i + 1;
+            int end = Math.min(first + arity, size);
+            int child = first;
+            for (int c = first + 1; c < end; c++) {
+                if (heap[c] < heap[child]) {
+                    child = c;
+                }
+            }
+            if (value <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+
+    //Efficiently constructs a heap from an existing array of elements using the bottom-up approach (O(n))
+    public void buildHeap(int[] elements) {
+        heap = Arrays.copyOf(elements, Math.max(1, elements.length));
+        size = elements.length;
+        for (int i = parent(size - 1); i >= 0; i--) {
+            siftDown(i, heap[i]);
+        }
+    }
+
+    //Decreases the value of a key at a specific index and restores the heap property.
+    public void decreaseKey(int index, int newValue) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException();
+        if (newValue > heap[index]) throw new IllegalArgumentException("New value is greater than current value");
+        siftUp(index, newValue);
+    }
+
+    //Removes the element at the specified index and maintains the heap property.
+    public void delete(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException();
+        int last = heap[--size];
+        if (index == size) {
+            return;
+        }
+        // The last element fills the hole and moves whichever way the heap order needs
+        if (index > 0 && last < heap[parent(index)]) {
+            siftUp(index, last);
+        } else {
+            siftDown(index, last);
+        }
+    }
+
+    //Returns a copy of the elements in heap (not sorted) order; the heap is unchanged
+    public int[] toArray() {
+        return Arrays.copyOf(heap, size);
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    //Returns the elements in ascending order by repeatedly extracting the minimum (empties the heap).
+    public int[] heapSort() {
+        int[] sorted = new int[size];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = extractMin();
+        }
+        return sorted;
+    }
+
+    //Sorts values ascending in place with no allocation: build a max-heap, then repeatedly
+    //swap its root (the largest remaining value) to the end of the unsorted prefix. O(n log n).
+    public static void heapSort(int[] values) {
+        int n = values.length;
+        for (int i = n / 2 - 1; i >= 0; i--) {
+            siftDownMax(values, i, values[i], n);
+        }
+        for (int end = n - 1; end > 0; end--) {
+            int last = values[end];
+            values[end] = values[0];
+            // Bottom-up (Floyd): the value from the end almost always belongs near the leaves, so pull
+            // the larger child up all the way down, then climb back to its place (half the comparisons)
+            int i = 0;
+            int half = end >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < end && values[child + 1] > values[child]) {
+                    child++;
+                }
+                values[i] = values[child];
+                i = child;
+            }
+            while (i > 0 && values[(i - 1) / 2] < last) {
+                values[i] = values[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            values[i] = last;
+        }
+    }
+
+    //Max-heap sift-down of value from index i within values[0..n)
+    private static void siftDownMax(int[] values, int i, int value, int n) {
+        int half = n >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < n && values[child + 1] > values[child]) {
+                child++;
+            }
+            if (value >= values[child]) {
+                break;
+            }
+            values[i] = values[child];
+            i = child;
+        }
+        values[i] = value;
+    }
+
+    public void printHeap() {
+        System.out.println(Arrays.toString(Arrays.copyOf(heap, size)));
+    }
+
+    public static void main(String[] args) {
+        IntMinHeap minHeap = new IntMinHeap();
+        minHeap.insert(10);
+        minHeap.insert(20);
+        minHeap.insert(15);
+        minHeap.insert(30);
+        minHeap.insert(40);
+        minHeap.insert(5);
+        minHeap.printHeap(); // Should display the heap in min-heap order
+        System.out.println("Extracted Min: " + minHeap.extractMin());
+        minHeap.printHeap(); // Heap after extracting the minimum
+
+        minHeap.decreaseKey(3, 1);
+        System.out.print("After decreaseKey(3, 1): ");
+        minHeap.printHeap();
+        minHeap.delete(2);
+        System.out.print("After delete(2): ");
+        minHeap.printHeap();
+
+        IntMinHeap built = new IntMinHeap();
+        built.buildHeap(new int[]{9, 4, 7, 1, 8, 2, 6, 3, 5});
+        System.out.println("buildHeap + heapSort: " + Arrays.toString(built.heapSort()));
+    }
+}
@@ -0,0 +1,462 @@
+import java.util.TreeMap;
+
+/**
+ * Primitive long -> long ordered map built on the BTree node algorithms
+ *
+ * Each node stores its keys and values inline in parallel long[] arrays,
+ * so there is no boxing and no per-entry object anywhere. Insert splits
+ * full children on the way down (splitChild) and delete fills minimal
+ * children on the way down (fill / borrowFromPrev / borrowFromNext / merge),
+ * exactly like BTree, with every key move carrying its value along.
+ *
+ * Lookups (get, containsKey, floor*, ceiling*) are plain loops over the
+ * arrays and never allocate. Absent results are reported with the
+ * missingKey / missingValue sentinels chosen at construction.
+ */
+public class LongLongBTreeMap {
+
+    /**
+     * Node holds up to 2t-1 entries and 2t children
+     */
+    static final class Node {
+        final long[] keys;
+        final long[] values;
+        final Node[] children; // null for leaves
+        final boolean isLeaf;
+        int numKeys;
+
+        Node(int minDegree, boolean isLeaf) {
+            this.isLeaf = isLeaf;
+            this.keys = new long[2 * minDegree - 1];
+            this.values = new long[2 * minDegree - 1];
+            this.children = isLeaf ? null : new Node[2 * minDegree];
+        }
+
+        /**
+         * Index of the first key >= key
+         */
+        int lowerBound(long key) {
+            int i = 0;
+            while (i < numKeys && keys[i] < key) {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    private final int minDegree;
+    private final int maxKeys;
+    private final long missingKey;
+    private final long missingValue;
+    private Node root;
+    private int size;
+
+    /**
+     * @param minDegree - minimum degree of the tree (at least 2)
+     * @param missingKey - returned by floorKey/ceilingKey when there is no such key
+     * @param missingValue - returned by get/put/remove/floorValue/ceilingValue when there is no entry
+     */
+    public LongLongBTreeMap(int minDegree, long missingKey, long missingValue) {
+        if (minDegree < 2) throw new IllegalArgumentException("minDegree must be at least 2");
+        this.minDegree = minDegree;
+        this.maxKeys = 2 * minDegree - 1;
+        this.missingKey = missingKey;
+        this.missingValue = missingValue;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /*
+     * LOOKUPS
+     */
+
+    /**
+     * @return the value for key, or missingValue
+     */
+    public long get(long key) {
+        Node node = root;
+        while (node != null) {
+            int i = node.lowerBound(key);
+            if (i < node.numKeys && node.keys[i] == key) {
+                return node.values[i];
+            }
+            node = node.isLeaf ? null : node.children[i];
+        }
+        return missingValue;
+    }
+
+    public boolean containsKey(long key) {
+        Node node = root;
+        while (node != null) {
+            int i = node.lowerBound(key);
+            if (i < node.numKeys && node.keys[i] == key) {
+                return true;
+            }
+            node = node.isLeaf ? null : node.children[i];
+        }
+        return false;
+    }
+
+    /**
+     * Greatest key <= key, or missingKey
+     */
+    public long floorKey(long key) {
+        return floor(key, true);
+    }
+
+    /**
+     * Value of the greatest key <= key, or missingValue
+     */
+    public long floorValue(long key) {
+        return floor(key, false);
+    }
+
+    /**
+     * Least key >= key, or missingKey
+     */
+    public long ceilingKey(long key) {
+        return ceiling(key, true);
+    }
+
+    /**
+     * Value of the least key >= key, or missingValue
+     */
+    public long ceilingValue(long key) {
+        return ceiling(key, false);
+    }
+
+    /**
+     * Keys in children[i] lie between keys[i-1] and keys[i], so the best
+     * candidate found in a node can only be improved by descending into children[i]
+     */
+    private long floor(long key, boolean wantKey) {
+        Node node = root;
+        Node best = null;
+        int bestIdx = 0;
+        while (node != null) {
+            int i = node.lowerBound(key);
+            if (i < node.numKeys && node.keys[i] == key) {
+                return wantKey ? key : node.values[i];
+            }
+            if (i > 0) {
+                best = node;
+                bestIdx = i - 1;
+            }
+            node = node.isLeaf ? null : node.children[i];
+        }
+        if (best == null) {
+            return wantKey ? missingKey : missingValue;
+        }
+        return wantKey ? best.keys[bestIdx] : best.values[bestIdx];
+    }
+
+    private long ceiling(long key, boolean wantKey) {
+        Node node = root;
+        Node best = null;
+        int bestIdx = 0;
+        while (node != null) {
+            int i = node.lowerBound(key);
+            if (i < node.numKeys) {
+                if (node.keys[i] == key) {
+                    return wantKey ? key : node.values[i];
+                }
+                best = node;
+                bestIdx = i;
+            }
+            node = node.isLeaf ? null : node.children[i];
+        }
+        if (best == null) {
+            return wantKey ? missingKey : missingValue;
+        }
+        return wantKey ? best.keys[bestIdx] : best.values[bestIdx];
+    }
+
+    /*
+     * INSERTION
+     */
+
+    /**
+     * Associate value with key
+     * @return the previous value, or missingValue if the key was absent
+     */
+    public long put(long key, long value) {
+        if (root == null) {
+            root = new Node(minDegree, true);
+        }
+        if (root.numKeys == maxKeys) {
+            Node newRoot = new Node(minDegree, false);
+            newRoot.children[0] = root;
+            splitChild(newRoot, 0, root);
+            root = newRoot;
+        }
+
+        Node node = root;
+        while (true) {
+            int i = node.lowerBound(key);
+            if (i < node.numKeys && node.keys[i] == key) {
+                long old = node.values[i];
+                node.values[i] = value;
+                return old;
+            }
+
+            if (node.isLeaf) {
+                System.arraycopy(node.keys, i, node.keys, i + 1, node.numKeys - i);
+                System.arraycopy(node.values, i, node.values, i + 1, node.numKeys - i);
+                node.keys[i] = key;
+                node.values[i] = value;
+                node.numKeys++;
+                size++;
+                return missingValue;
+            }
+
+            if (node.children[i].numKeys == maxKeys) {
+                splitChild(node, i, node.children[i]);
+                // The median moved up into position i; it may be the key itself
+                if (node.keys[i] == key) {
+                    long old = node.values[i];
+                    node.values[i] = value;
+                    return old;
+                }
+                if (node.keys[i] < key) {
+                    i++;
+                }
+            }
+            node = node.children[i];
+        }
+    }
+
+    /**
+     * Split the full child of parent at index; the median entry moves up
+     */
+    private void splitChild(Node parent, int index, Node fullChild) {
+        int t = minDegree;
+        Node newChild = new Node(t, fullChild.isLeaf);
+        System.arraycopy(fullChild.keys, t, newChild.keys, 0, t - 1);
+        System.arraycopy(fullChild.values, t, newChild.values, 0, t - 1);
+        if (!fullChild.isLeaf) {
+            System.arraycopy(fullChild.children, t, newChild.children, 0, t);
+        }
+        newChild.numKeys = t - 1;
+        fullChild.numKeys = t - 1;
+
+        int n = parent.numKeys;
+        System.arraycopy(parent.children, index + 1, parent.children, index + 2, n - index);
+        parent.children[index + 1] = newChild;
+        System.arraycopy(parent.keys, index, parent.keys, index + 1, n - index);
+        System.arraycopy(parent.values, index, parent.values, index + 1, n - index);
+        parent.keys[index] = fullChild.keys[t - 1];
+        parent.values[index] = fullChild.values[t - 1];
+        parent.numKeys = n + 1;
+    }
+
+    /*
+     * DELETION
+     */
+
+    /**
+     * Remove the entry for key
+     * @return the removed value, or missingValue if the key was absent
+     */
+    public long remove(long key) {
+        if (root == null) {
+            return missingValue;
+        }
+        long removed = missingValue;
+        boolean found = false;
+        int t = minDegree;
+
+        // Iterative form of BTreeNode.delete: every recursive call there is a tail call
+        Node node = root;
+        while (true) {
+            int idx = node.lowerBound(key);
+
+            if (idx < node.numKeys && node.keys[idx] == key) {
+                if (!found) {
+                    removed = node.values[idx];
+                    found = true;
+                }
+                if (node.isLeaf) {
+                    System.arraycopy(node.keys, idx + 1, node.keys, idx, node.numKeys - idx - 1);
+                    System.arraycopy(node.values, idx + 1, node.values, idx, node.numKeys - idx - 1);
+                    node.numKeys--;
+                    size--;
+                    break;
+                }
+
+                Node left = node.children[idx];
+                Node right = node.children[idx + 1];
+                if (left.numKeys >= t) {
+                    // Replace with predecessor, then delete the predecessor from the left subtree
+                    Node cur = left;
+                    while (!cur.isLeaf) {
+                        cur = cur.children[cur.numKeys];
+                    }
+                    key = cur.keys[cur.numKeys - 1];
+                    node.keys[idx] = key;
+                    node.values[idx] = cur.values[cur.numKeys - 1];
+                    node = left;
+                } else if (right.numKeys >= t) {
+                    Node cur = right;
+                    while (!cur.isLeaf) {
+                        cur = cur.children[0];
+                    }
+                    key = cur.keys[0];
+                    node.keys[idx] = key;
+                    node.values[idx] = cur.values[0];
+                    node = right;
+                } else {
+                    merge(node, idx);
+                    node = left;
+                }
+                continue;
+            }
+
+            if (node.isLeaf) {
+                break; // key is not in the tree
+            }
+
+            boolean last = (idx == node.numKeys);
+            if (node.children[idx].numKeys < t) {
+                fill(node, idx);
+            }
+            node = (last && idx > node.numKeys) ? node.children[idx - 1] : node.children[idx];
+        }
+
+        // If root has 0 keys, make its first child the new root
+        if (root.numKeys == 0) {
+            root = root.isLeaf ? null : root.children[0];
+        }
+        return removed;
+    }
+
+    private void fill(Node parent, int idx) {
+        if (idx != 0 && parent.children[idx - 1].numKeys >= minDegree) {
+            borrowFromPrev(parent, idx);
+        } else if (idx != parent.numKeys && parent.children[idx + 1].numKeys >= minDegree) {
+            borrowFromNext(parent, idx);
+        } else if (idx != parent.numKeys) {
+            merge(parent, idx);
+        } else {
+            merge(parent, idx - 1);
+        }
+    }
+
+    private void borrowFromPrev(Node parent, int idx) {
+        Node child = parent.children[idx];
+        Node sibling = parent.children[idx - 1];
+        int sn = sibling.numKeys;
+
+        System.arraycopy(child.keys, 0, child.keys, 1, child.numKeys);
+        System.arraycopy(child.values, 0, child.values, 1, child.numKeys);
+        if (!child.isLeaf) {
+            System.arraycopy(child.children, 0, child.children, 1, child.numKeys + 1);
+            child.children[0] = sibling.children[sn];
+        }
+        child.keys[0] = parent.keys[idx - 1];
+        child.values[0] = parent.values[idx - 1];
+        parent.keys[idx - 1] = sibling.keys[sn - 1];
+        parent.values[idx - 1] = sibling.values[sn - 1];
+
+        child.numKeys++;
+        sibling.numKeys--;
+    }
+
+    private void borrowFromNext(Node parent, int idx) {
+        Node child = parent.children[idx];
+        Node sibling = parent.children[idx + 1];
+        int cn = child.numKeys;
+        int sn = sibling.numKeys;
+
+        child.keys[cn] = parent.keys[idx];
+        child.values[cn] = parent.values[idx];
+        if (!child.isLeaf) {
+            child.children[cn + 1] = sibling.children[0];
+            System.arraycopy(sibling.children, 1, sibling.children, 0, sn);
+        }
+        parent.keys[idx] = sibling.keys[0];
+        parent.values[idx] = sibling.values[0];
+        System.arraycopy(sibling.keys, 1, sibling.keys, 0, sn - 1);
+        System.arraycopy(sibling.values, 1, sibling.values, 0, sn - 1);
+
+        child.numKeys++;
+        sibling.numKeys--;
+    }
+
+    /**
+     * Merge child idx+1 into child idx, pulling down the entry between them
+     */
+    private void merge(Node parent, int idx) {
+        int t = minDegree;
+        Node child = parent.children[idx];
+        Node sibling = parent.children[idx + 1];
+        int sn = sibling.numKeys;
+
+        child.keys[t - 1] = parent.keys[idx];
+        child.values[t - 1] = parent.values[idx];
+        System.arraycopy(sibling.keys, 0, child.keys, t, sn);
+        System.arraycopy(sibling.values, 0, child.values, t, sn);
+        if (!child.isLeaf) {
+            System.arraycopy(sibling.children, 0, child.children, t, sn + 1);
+        }
+        child.numKeys += sn + 1;
+
+        int n = parent.numKeys;
+        System.arraycopy(parent.keys, idx + 1, parent.keys, idx, n - idx - 1);
+        System.arraycopy(parent.values, idx + 1, parent.values, idx, n - idx - 1);
+        System.arraycopy(parent.children, idx + 2, parent.children, idx + 1, n - idx - 1);
+        parent.children[n] = null;
+        parent.numKeys = n - 1;
+    }
+
+    public static void main(String[] args) {
+        System.out.println("=== LONG -> LONG B-TREE MAP ===");
+
+        // Offset index: message offset -> file position
+        LongLongBTreeMap index = new LongLongBTreeMap(32, -1L, -1L);
+        for (long offset = 0; offset < 1_000_000; offset += 10) {
+            index.put(offset, offset * 128);
+        }
+        System.out.println("size = " + index.size());
+        System.out.println("get(500) = " + index.get(500) + ", get(505) = " + index.get(505));
+        System.out.println("floorKey(505) = " + index.floorKey(505) + " -> position " + index.floorValue(505));
+        System.out.println("ceilingKey(505) = " + index.ceilingKey(505) + ", ceilingKey(2000000) = " + index.ceilingKey(2_000_000));
+
+        for (long offset = 0; offset < 500_000; offset += 10) {
+            index.remove(offset);
+        }
+        System.out.println("After removing the first half: size = " + index.size()
+                + ", floorKey(100) = " + index.floorKey(100) + ", ceilingKey(100) = " + index.ceilingKey(100));
+
+        // Lookup throughput against a boxed TreeMap<Long, Long>
+        int n = 2_000_000;
+        LongLongBTreeMap primitive = new LongLongBTreeMap(32, -1L, -1L);
+        TreeMap<Long, Long> boxed = new TreeMap<>();
+        for (long k = 0; k < n; k++) {
+            primitive.put(k * 3, k);
+            boxed.put(k * 3, k);
+        }
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long sum = 0;
+            for (long k = 0; k < 3L * n; k += 7) {
+                sum += primitive.floorValue(k);
+            }
+            long primitiveNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long boxedSum = 0;
+            for (long k = 0; k < 3L * n; k += 7) {
+                boxedSum += boxed.floorEntry(k).getValue();
+            }
+            long boxedNs = System.nanoTime() - start;
+            System.out.printf("floor lookups: LongLongBTreeMap %d ms, TreeMap<Long,Long> %d ms (%s)%n",
+                    primitiveNs / 1_000_000, boxedNs / 1_000_000, sum == boxedSum ? "same results" : "MISMATCH");
+        }
+    }
+}
@@ -1,20 +1,40 @@
-/*Implementation of a Min Heap using an ArrayList*/
+/*Implementation of a d-ary Min Heap using an ArrayList (d = 2 is the classic binary heap)*/
 import java.util.ArrayList;
+import java.util.List;
 
-public class MinHeap{
+public class MinHeap implements IntHeap{
     ArrayList<Integer> heap;
+    private final int arity; //children per node; the d children of a node are contiguous
     public MinHeap(){
+        this(2);
+    }
+
+    //Wider nodes make the heap shallower (log_d n levels): fewer cache-missing levels per extractMin,
+    //at the cost of d-1 comparisons per level. 4 or 8 usually beats 2 on large heaps.
+    public MinHeap(int arity){
+        if(arity<2) throw new IllegalArgumentException("arity must be at least 2");
+        this.arity=arity;
         heap=new ArrayList<>();
     }
 
     private int parent(int i){
-        return (i-1)/2;
+        return (i-1)/arity;
+    }
+    private int firstChild(int i){
+        return arity*i+1;
     }
-    private int leftChild(int i){
-        return 2*i+1;
+
+    public int size(){
+        return heap.size();
     }
-    private int rightChild(int i){
-        return 2*i+2;
+
+    public boolean isEmpty(){
+        return heap.isEmpty();
+    }
+
+    public int peek(){
+        if(heap.isEmpty()) throw new IllegalStateException("Heap is empty");
+        return heap.get(0);
     }
 
     public void insert(int value){  //Time Complexity: O(log n)
@@ -37,20 +57,22 @@ public class MinHeap{
         return min;
     }
 
-    private void heapify(int i){ //Time Complexity: O(log n)
-        int smallest=i;
-        int left=leftChild(i);
-        int right=rightChild(i);
-
-        while(left<heap.size() && heap.get(left)<heap.get(smallest)){
-            smallest=left;
-        }
-        while(right<heap.size() && heap.get(right)<heap.get(smallest)){
-            smallest=right;
-        }
-        if(smallest!=i){
+    private void heapify(int i){ //Time Complexity: O(d log_d n)
+        while(true){
+            //Smallest of the node and its (up to d) children
+            int smallest=i;
+            int first=firstChild(i);
+            int end=Math.min(first+arity,heap.size());
+            for(int child=first;child<end;child++){
+                if(heap.get(child)<heap.get(smallest)){
+                    smallest=child;
+                }
+            }
+            if(smallest==i){
+                return;
+            }
             swap(i,smallest);
-            heapify(smallest);
+            i=smallest;
         }
     }
 
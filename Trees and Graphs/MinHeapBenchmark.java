@@ -0,0 +1,107 @@
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Throughput of MinHeap, PriorityQueue<Integer> and IntMinHeap
+ *
+ * Two workloads on random int priorities:
+ * - fill/drain: insert N values, then extractMin until empty
+ * - scheduler: a heap held at N entries where every step extracts the
+ *   minimum and inserts a new value (the hold model of an event queue)
+ */
+public class MinHeapBenchmark {
+
+    private static final int SIZE = 1_000_000;
+    private static final int STEPS = 4_000_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        int[] values = new int[SIZE + STEPS];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt();
+        }
+
+        System.out.printf("%-24s %16s %16s%n", "heap", "fill/drain op/s", "scheduler op/s");
+        for (int round = 0; round < ROUNDS; round++) {
+            // Order-sensitive checksums of what each heap extracts
+            long boxedSum = 0;
+            long queueSum = 0;
+            long primitiveSum = 0;
+
+            // MinHeap (ArrayList<Integer>)
+            long start = System.nanoTime();
+            MinHeap boxed = new MinHeap();
+            for (int i = 0; i < SIZE; i++) {
+                boxed.insert(values[i]);
+            }
+            for (int i = 0; i < SIZE; i++) {
+                boxedSum = boxedSum * 31 + boxed.extractMin();
+            }
+            double fill = rate(2L * SIZE, start);
+            for (int i = 0; i < SIZE; i++) {
+                boxed.insert(values[i]);
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < STEPS; i++) {
+                boxedSum = boxedSum * 31 + boxed.extractMin();
+                boxed.insert(values[SIZE + i]);
+            }
+            report("MinHeap", fill, rate(2L * STEPS, start));
+
+            // PriorityQueue<Integer>
+            start = System.nanoTime();
+            PriorityQueue<Integer> queue = new PriorityQueue<>();
+            for (int i = 0; i < SIZE; i++) {
+                queue.add(values[i]);
+            }
+            for (int i = 0; i < SIZE; i++) {
+                queueSum = queueSum * 31 + queue.poll();
+            }
+            fill = rate(2L * SIZE, start);
+            for (int i = 0; i < SIZE; i++) {
+                queue.add(values[i]);
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < STEPS; i++) {
+                queueSum = queueSum * 31 + queue.poll();
+                queue.add(values[SIZE + i]);
+            }
+            report("PriorityQueue<Integer>", fill, rate(2L * STEPS, start));
+
+            // IntMinHeap (int[])
+            start = System.nanoTime();
+            IntMinHeap primitive = new IntMinHeap();
+            for (int i = 0; i < SIZE; i++) {
+                primitive.insert(values[i]);
+            }
+            for (int i = 0; i < SIZE; i++) {
+                primitiveSum = primitiveSum * 31 + primitive.extractMin();
+            }
+            fill = rate(2L * SIZE, start);
+            for (int i = 0; i < SIZE; i++) {
+                primitive.insert(values[i]);
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < STEPS; i++) {
+                primitiveSum = primitiveSum * 31 + primitive.extractMin();
+                primitive.insert(values[SIZE + i]);
+            }
+            report("IntMinHeap", fill, rate(2L * STEPS, start));
+
+            // Same values in the same order as PriorityQueue, the reference
+            if (boxedSum != queueSum || primitiveSum != queueSum) {
+                throw new IllegalStateException("Heaps disagree");
+            }
+            System.out.println();
+        }
+    }
+
+    private static double rate(long operations, long start) {
+        return operations / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static void report(String name, double fill, double scheduler) {
+        System.out.printf("%-24s %,16.0f %,16.0f%n", name, fill, scheduler);
+    }
+}
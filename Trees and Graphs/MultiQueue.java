@@ -0,0 +1,209 @@
+/*MultiQueue: a concurrent relaxed min priority queue built from independently locked heap shards*/
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Inserts go to a random shard; extractMin locks the better of two random shards (by their published
+//minima) and takes its minimum. No thread ever waits for a lock: a busy shard just means another random
+//pick, so throughput grows with threads instead of collapsing on one lock. The price is order: the
+//value returned is among the smallest few, not always the smallest. More shards per thread (the
+//relaxation factor c) means less contention and a larger expected rank error (about c * threads).
+public class MultiQueue {
+    private static final long EMPTY = Long.MAX_VALUE;
+    private static final int STRIDE = 8; // one cache line of longs per published minimum (no false sharing)
+
+    private final IntMinHeap[] shards;
+    private final ReentrantLock[] locks;
+    private final AtomicLongArray minima; // minima[i * STRIDE] = smallest value in shard i, or EMPTY
+    private final LongAdder size = new LongAdder();
+
+    //threads = expected number of concurrent callers, shardsPerThread = relaxation factor c (2 is typical)
+    public MultiQueue(int threads, int shardsPerThread) {
+        if (threads < 1 || shardsPerThread < 1) throw new IllegalArgumentException("threads and shardsPerThread must be positive");
+        int count = Math.max(2, threads * shardsPerThread);
+        shards = new IntMinHeap[count];
+        locks = new ReentrantLock[count];
+        minima = new AtomicLongArray(count * STRIDE);
+        for (int i = 0; i < count; i++) {
+            shards[i] = new IntMinHeap();
+            locks[i] = new ReentrantLock();
+            minima.set(i * STRIDE, EMPTY);
+        }
+    }
+
+    public int shards() {
+        return shards.length;
+    }
+
+    //Approximate while other threads are inserting or extracting
+    public long size() {
+        return size.sum();
+    }
+
+    public void insert(int value) { //Time Complexity: O(log(n/shards)) plus retries on busy shards
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        size.increment(); // counted before it is visible, so extractMin never gives up on an in-flight insert
+        while (true) {
+            int i = random.nextInt(shards.length);
+            ReentrantLock lock = locks[i];
+            if (lock.tryLock()) {
+                try {
+                    shards[i].insert(value);
+                    minima.set(i * STRIDE, shards[i].peek());
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+        }
+    }
+
+    //Removes and returns a small value (the smaller minimum of two random shards), or emptyValue if the queue is empty
+    public int extractMin(int emptyValue) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            int i = random.nextInt(shards.length);
+            int j = random.nextInt(shards.length);
+            long minI = minima.get(i * STRIDE);
+            long minJ = minima.get(j * STRIDE);
+            int best = (minJ < minI) ? j : i;
+            if (Math.min(minI, minJ) == EMPTY) {
+                if (size.sum() <= 0) {
+                    return emptyValue;
+                }
+                continue; // the values are on other shards
+            }
+            ReentrantLock lock = locks[best];
+            if (!lock.tryLock()) {
+                continue;
+            }
+            try {
+                IntMinHeap shard = shards[best];
+                if (shard.isEmpty()) {
+                    continue; // emptied since its minimum was read
+                }
+                int value = shard.extractMin();
+                minima.set(best * STRIDE, shard.isEmpty() ? EMPTY : shard.peek());
+                size.decrement();
+                return value;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        MultiQueue queue = new MultiQueue(2, 2);
+        for (int value : new int[]{50, 10, 40, 20, 30, 60}) {
+            queue.insert(value);
+        }
+        System.out.print(queue.shards() + " shards, extraction order (relaxed):");
+        for (int value = queue.extractMin(-1); value != -1; value = queue.extractMin(-1)) {
+            System.out.print(" " + value);
+        }
+        System.out.println();
+
+        // Rank error: how many smaller values were still queued when a value came out
+        int n = 1_000_000;
+        int threads = 8;
+        System.out.printf("%nRank error for %d threads' worth of shards (values 0..%,d, half extracted):%n", threads, n - 1);
+        for (int c : new int[]{1, 2, 4, 8}) {
+            MultiQueue relaxed = new MultiQueue(threads, c);
+            int[] values = permutation(n);
+            for (int value : values) {
+                relaxed.insert(value);
+            }
+            // Fenwick tree over the values still queued
+            int[] tree = new int[n + 1];
+            for (int v = 1; v <= n; v++) {
+                tree[v]++;
+                int up = v + (v & -v);
+                if (up <= n) {
+                    tree[up] += tree[v];
+                }
+            }
+            long total = 0;
+            int max = 0;
+            for (int k = 0; k < n / 2; k++) {
+                int value = relaxed.extractMin(-1);
+                int rank = 0;
+                for (int v = value; v > 0; v -= v & -v) {
+                    rank += tree[v];
+                }
+                for (int v = value + 1; v <= n; v += v & -v) {
+                    tree[v]--;
+                }
+                total += rank;
+                max = Math.max(max, rank);
+            }
+            System.out.printf("  c = %d (%3d shards): mean rank error %6.2f, max %4d%n", c, relaxed.shards(), (double) total / (n / 2), max);
+        }
+
+        // Throughput of an insert + extractMin mix against one locked heap
+        int workers = Math.max(4, Runtime.getRuntime().availableProcessors());
+        int opsPerWorker = 1_000_000;
+        System.out.printf("%n%d threads x %,d insert+extractMin pairs (%d cores available):%n", workers, opsPerWorker,
+                Runtime.getRuntime().availableProcessors());
+        for (int round = 0; round < 3; round++) {
+            IntMinHeap single = new IntMinHeap();
+            Object lock = new Object();
+            MultiQueue multi = new MultiQueue(workers, 2);
+            for (int value : permutation(100_000)) {
+                single.insert(value);
+                multi.insert(value);
+            }
+            double lockedRate = run(workers, opsPerWorker, random -> {
+                synchronized (lock) {
+                    single.insert(random.nextInt(1 << 20));
+                }
+                synchronized (lock) {
+                    single.extractMin();
+                }
+            });
+            double multiRate = run(workers, opsPerWorker, random -> {
+                multi.insert(random.nextInt(1 << 20));
+                multi.extractMin(-1);
+            });
+            System.out.printf("  locked IntMinHeap %,14.0f ops/sec   MultiQueue %,14.0f ops/sec%n", lockedRate, multiRate);
+        }
+    }
+
+    private interface Step {
+        void run(ThreadLocalRandom random);
+    }
+
+    //Runs step opsPerWorker times on each of workers threads; returns operations (2 per step) per second
+    private static double run(int workers, int opsPerWorker, Step step) throws InterruptedException {
+        Thread[] pool = new Thread[workers];
+        long start = System.nanoTime();
+        for (int w = 0; w < workers; w++) {
+            pool[w] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < opsPerWorker; i++) {
+                    step.run(random);
+                }
+            });
+            pool[w].start();
+        }
+        for (Thread thread : pool) {
+            thread.join();
+        }
+        return 2.0 * workers * opsPerWorker / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static int[] permutation(int n) {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = values[i];
+            values[i] = values[j];
+            values[j] = t;
+        }
+        return values;
+    }
+}
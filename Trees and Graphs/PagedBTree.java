@@ -0,0 +1,891 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Disk-backed B-Tree where every node is a fixed-size page in a file
+ *
+ * Same algorithms as BTree (search, insert, splitChild, delete, fill, merge...)
+ * but nodes are pages instead of Java objects, so the index can grow far
+ * beyond the heap and the garbage collector never sees the nodes.
+ *
+ * Storage layers:
+ * 1. The file is memory-mapped in fixed-size segments through a FileChannel,
+ *    so reads and write-backs go through the OS page cache.
+ * 2. A bounded buffer pool of preallocated frames sits on top of the mapping.
+ *    Nodes are pinned into frames while an operation uses them; unpinned
+ *    frames are evicted with the CLOCK (second-chance) policy and dirty
+ *    frames are written back to the mapping on eviction or flush().
+ *
+ * Page layout:
+ *   page 0     : header (magic, minDegree, pageSize, root, pageCount, free list)
+ *   node pages : [numKeys][isLeaf][keys: 2t-1 ints][children: 2t page ids]
+ * Page 0 is never a node, so page id 0 doubles as the null child pointer.
+ * Pages released by merge and root collapse are chained into a free list
+ * and reused by later splits.
+ */
+public class PagedBTree implements Closeable {
+
+    private static final int MAGIC = 0x42545245; // "BTRE"
+    private static final int NULL_PAGE = 0;
+    private static final int PAGES_PER_SEGMENT = 1024;
+
+    // Header page offsets
+    private static final int HDR_MAGIC = 0;
+    private static final int HDR_MIN_DEGREE = 4;
+    private static final int HDR_PAGE_SIZE = 8;
+    private static final int HDR_ROOT = 12;
+    private static final int HDR_PAGE_COUNT = 16;
+    private static final int HDR_FREE_HEAD = 20;
+
+    // Node page offsets (a free page stores the next free page id in NUM_KEYS)
+    private static final int NUM_KEYS = 0;
+    private static final int IS_LEAF = 4;
+    private static final int KEYS = 8;
+
+    private final FileChannel channel;
+    private final ArrayList<MappedByteBuffer> segments = new ArrayList<>();
+    private final long segmentBytes;
+
+    private final int minDegree;
+    private final int maxKeys;
+    private final int pageSize;
+    private final int childrenOffset;
+
+    private final BufferPool pool;
+    private final ByteBuffer frames; // backing memory of all buffer pool frames
+
+    private int rootPage;
+    private int pageCount;
+    private int freeHead;
+
+    private PagedBTree(FileChannel channel, int minDegree, int pageSize, int poolPages) {
+        this.channel = channel;
+        this.minDegree = minDegree;
+        this.maxKeys = 2 * minDegree - 1;
+        this.pageSize = pageSize;
+        this.childrenOffset = KEYS + 4 * maxKeys;
+        this.segmentBytes = (long) pageSize * PAGES_PER_SEGMENT;
+        this.frames = ByteBuffer.allocateDirect(pageSize * poolPages);
+        this.pool = new BufferPool(poolPages);
+    }
+
+    /**
+     * Open (or create) a paged B-tree backed by the given file
+     *
+     * @param file - index file; created if missing or empty
+     * @param minDegree - minimum degree for a new file (an existing file keeps its own)
+     * @param poolPages - number of frames in the buffer pool (at least 8)
+     */
+    public static PagedBTree open(Path file, int minDegree, int poolPages) throws IOException {
+        if (minDegree < 2) throw new IllegalArgumentException("minDegree must be at least 2");
+        if (poolPages < 8) throw new IllegalArgumentException("Buffer pool needs at least 8 frames");
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                PagedBTree tree = new PagedBTree(channel, minDegree, pageSizeFor(minDegree), poolPages);
+                tree.rootPage = NULL_PAGE;
+                tree.pageCount = 1; // page 0 is the header
+                tree.freeHead = NULL_PAGE;
+                tree.writeHeader();
+                return tree;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HDR_FREE_HEAD + 4);
+            channel.read(header, 0);
+            if (header.getInt(HDR_MAGIC) != MAGIC) {
+                throw new IOException("Not a PagedBTree file: " + file);
+            }
+            PagedBTree tree = new PagedBTree(channel, header.getInt(HDR_MIN_DEGREE),
+                    header.getInt(HDR_PAGE_SIZE), poolPages);
+            tree.rootPage = header.getInt(HDR_ROOT);
+            tree.pageCount = header.getInt(HDR_PAGE_COUNT);
+            tree.freeHead = header.getInt(HDR_FREE_HEAD);
+            return tree;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Smallest power of two that holds a node of the given minimum degree,
+     * so pages never straddle an OS page boundary
+     */
+    static int pageSizeFor(int minDegree) {
+        int bytes = KEYS + 4 * (2 * minDegree - 1) + 4 * (2 * minDegree);
+        int size = 64;
+        while (size < bytes) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * BufferPool caches node pages in a fixed number of frames
+     * Page table is an open-addressing int->int map so lookups never box.
+     */
+    private final class BufferPool {
+        private final int capacity;
+        private final int[] framePage;   // page held by each frame, NULL_PAGE if empty
+        private final int[] pinCount;
+        private final boolean[] dirty;
+        private final boolean[] referenced;
+        private final int[] tablePages;  // page table keys (NULL_PAGE = empty slot)
+        private final int[] tableFrames; // page table values
+        private final int tableMask;
+        private int hand;                // CLOCK hand
+
+        long hits;
+        long misses;
+        long evictions;
+        long writeBacks;
+
+        BufferPool(int capacity) {
+            this.capacity = capacity;
+            this.framePage = new int[capacity];
+            this.pinCount = new int[capacity];
+            this.dirty = new boolean[capacity];
+            this.referenced = new boolean[capacity];
+            int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+            this.tablePages = new int[tableSize];
+            this.tableFrames = new int[tableSize];
+            this.tableMask = tableSize - 1;
+        }
+
+        /**
+         * Pin a page into a frame, reading it from the mapping on a miss
+         * @return frame index holding the page
+         */
+        int pin(int page) {
+            int frame = lookup(page);
+            if (frame >= 0) {
+                hits++;
+            } else {
+                misses++;
+                frame = victim();
+                readPage(page, frame);
+                framePage[frame] = page;
+                put(page, frame);
+            }
+            pinCount[frame]++;
+            referenced[frame] = true;
+            return frame;
+        }
+
+        /**
+         * Pin a brand-new page without reading it (contents are zeroed)
+         */
+        int pinNew(int page) {
+            int frame = victim();
+            int base = frame * pageSize;
+            for (int i = 0; i < pageSize; i += 8) {
+                frames.putLong(base + i, 0L);
+            }
+            framePage[frame] = page;
+            put(page, frame);
+            dirty[frame] = true;
+            pinCount[frame]++;
+            referenced[frame] = true;
+            return frame;
+        }
+
+        void unpin(int frame) {
+            pinCount[frame]--;
+        }
+
+        void markDirty(int frame) {
+            dirty[frame] = true;
+        }
+
+        /**
+         * Write every dirty frame back to the mapped file
+         */
+        void flush() {
+            for (int f = 0; f < capacity; f++) {
+                if (dirty[f] && framePage[f] != NULL_PAGE) {
+                    writePage(framePage[f], f);
+                    writeBacks++;
+                    dirty[f] = false;
+                }
+            }
+        }
+
+        /**
+         * Pick a frame to reuse with the CLOCK policy
+         * First sweep clears reference bits, second sweep is guaranteed to
+         * find an unpinned frame if one exists.
+         */
+        private int victim() {
+            for (int step = 0; step < 2 * capacity; step++) {
+                int f = hand;
+                hand = (hand + 1 == capacity) ? 0 : hand + 1;
+                if (pinCount[f] > 0) {
+                    continue;
+                }
+                if (framePage[f] == NULL_PAGE) {
+                    return f;
+                }
+                if (referenced[f]) {
+                    referenced[f] = false;
+                    continue;
+                }
+                evict(f);
+                return f;
+            }
+            throw new IllegalStateException("Buffer pool exhausted: all " + capacity + " frames are pinned");
+        }
+
+        private void evict(int frame) {
+            if (dirty[frame]) {
+                writePage(framePage[frame], frame);
+                writeBacks++;
+                dirty[frame] = false;
+            }
+            remove(framePage[frame]);
+            framePage[frame] = NULL_PAGE;
+            evictions++;
+        }
+
+        private int slot(int page) {
+            return (page * 0x9E3779B9) >>> 7 & tableMask;
+        }
+
+        private int lookup(int page) {
+            for (int i = slot(page); tablePages[i] != NULL_PAGE; i = (i + 1) & tableMask) {
+                if (tablePages[i] == page) {
+                    return tableFrames[i];
+                }
+            }
+            return -1;
+        }
+
+        private void put(int page, int frame) {
+            int i = slot(page);
+            while (tablePages[i] != NULL_PAGE) {
+                i = (i + 1) & tableMask;
+            }
+            tablePages[i] = page;
+            tableFrames[i] = frame;
+        }
+
+        /**
+         * Remove a page from the table using backward-shift deletion
+         * (keeps linear probing chains intact without tombstones)
+         */
+        private void remove(int page) {
+            int i = slot(page);
+            while (tablePages[i] != page) {
+                i = (i + 1) & tableMask;
+            }
+            tablePages[i] = NULL_PAGE;
+            for (int j = (i + 1) & tableMask; tablePages[j] != NULL_PAGE; j = (j + 1) & tableMask) {
+                int home = slot(tablePages[j]);
+                // Entry at j may move into the hole at i only if its home slot is not in (i, j]
+                boolean stays = (i <= j) ? (home > i && home <= j) : (home > i || home <= j);
+                if (!stays) {
+                    tablePages[i] = tablePages[j];
+                    tableFrames[i] = tableFrames[j];
+                    tablePages[j] = NULL_PAGE;
+                    i = j;
+                }
+            }
+        }
+    }
+
+    /*
+     * FILE / MAPPING ACCESS
+     */
+
+    private MappedByteBuffer segment(int index) {
+        try {
+            while (segments.size() <= index) {
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE,
+                        segments.size() * segmentBytes, segmentBytes));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return segments.get(index);
+    }
+
+    private void readPage(int page, int frame) {
+        MappedByteBuffer seg = segment(page / PAGES_PER_SEGMENT);
+        frames.put(frame * pageSize, seg, (page % PAGES_PER_SEGMENT) * pageSize, pageSize);
+    }
+
+    private void writePage(int page, int frame) {
+        MappedByteBuffer seg = segment(page / PAGES_PER_SEGMENT);
+        seg.put((page % PAGES_PER_SEGMENT) * pageSize, frames, frame * pageSize, pageSize);
+    }
+
+    private void writeHeader() {
+        MappedByteBuffer seg = segment(0);
+        seg.putInt(HDR_MAGIC, MAGIC);
+        seg.putInt(HDR_MIN_DEGREE, minDegree);
+        seg.putInt(HDR_PAGE_SIZE, pageSize);
+        seg.putInt(HDR_ROOT, rootPage);
+        seg.putInt(HDR_PAGE_COUNT, pageCount);
+        seg.putInt(HDR_FREE_HEAD, freeHead);
+    }
+
+    /*
+     * NODE FIELD ACCESS (all offsets are inside the pinned frame)
+     */
+
+    private int numKeys(int f) {
+        return frames.getInt(f * pageSize + NUM_KEYS);
+    }
+
+    private void setNumKeys(int f, int n) {
+        frames.putInt(f * pageSize + NUM_KEYS, n);
+        pool.markDirty(f);
+    }
+
+    private boolean isLeaf(int f) {
+        return frames.getInt(f * pageSize + IS_LEAF) != 0;
+    }
+
+    private int key(int f, int i) {
+        return frames.getInt(f * pageSize + KEYS + 4 * i);
+    }
+
+    private void setKey(int f, int i, int key) {
+        frames.putInt(f * pageSize + KEYS + 4 * i, key);
+        pool.markDirty(f);
+    }
+
+    private int child(int f, int i) {
+        return frames.getInt(f * pageSize + childrenOffset + 4 * i);
+    }
+
+    private void setChild(int f, int i, int page) {
+        frames.putInt(f * pageSize + childrenOffset + 4 * i, page);
+        pool.markDirty(f);
+    }
+
+    private int pageOf(int f) {
+        return pool.framePage[f];
+    }
+
+    /**
+     * Allocate a node page (reusing the free list first) and pin it
+     * @return pinned frame of the new, empty node
+     */
+    private int newNode(boolean isLeaf) {
+        int f;
+        if (freeHead != NULL_PAGE) {
+            f = pool.pin(freeHead);
+            freeHead = numKeys(f);
+        } else {
+            f = pool.pinNew(pageCount++);
+        }
+        setNumKeys(f, 0);
+        frames.putInt(f * pageSize + IS_LEAF, isLeaf ? 1 : 0);
+        return f;
+    }
+
+    /**
+     * Push a page onto the free list
+     */
+    private void freePage(int page) {
+        int f = pool.pin(page);
+        setNumKeys(f, freeHead);
+        freeHead = page;
+        pool.unpin(f);
+    }
+
+    /*
+     * B-TREE OPERATIONS
+     */
+
+    /**
+     * Search for a key in the B-tree
+     * @param key - key to search
+     * @return true if found, false otherwise
+     */
+    public boolean search(int key) {
+        int page = rootPage;
+        while (page != NULL_PAGE) {
+            int f = pool.pin(page);
+            int n = numKeys(f);
+            int i = 0;
+
+            // Find the first key greater than or equal to the search key
+            while (i < n && key > key(f, i)) {
+                i++;
+            }
+            if (i < n && key == key(f, i)) {
+                pool.unpin(f);
+                return true;
+            }
+
+            page = isLeaf(f) ? NULL_PAGE : child(f, i);
+            pool.unpin(f);
+        }
+        return false;
+    }
+
+    /**
+     * Insert a key into the B-tree
+     * @param key - key to insert
+     */
+    public void insert(int key) {
+        if (rootPage == NULL_PAGE) {
+            // Create root for empty tree
+            int f = newNode(true);
+            setKey(f, 0, key);
+            setNumKeys(f, 1);
+            rootPage = pageOf(f);
+            pool.unpin(f);
+            return;
+        }
+
+        int root = pool.pin(rootPage);
+        if (numKeys(root) == maxKeys) {
+            // Grow the tree: new root with the old root as its only child
+            int newRoot = newNode(false);
+            setChild(newRoot, 0, rootPage);
+            splitChild(newRoot, 0, root);
+            pool.unpin(root);
+            rootPage = pageOf(newRoot);
+            insertNonFull(newRoot, key);
+        } else {
+            insertNonFull(root, key);
+        }
+    }
+
+    /**
+     * Insert a key into the subtree of a non-full node
+     * Walks down iteratively so at most three frames are pinned at a time.
+     *
+     * @param f - pinned frame of the node (the pin is released here)
+     */
+    private void insertNonFull(int f, int key) {
+        while (true) {
+            int i = numKeys(f) - 1;
+
+            if (isLeaf(f)) {
+                // Move all keys greater than the new key one position ahead
+                while (i >= 0 && key(f, i) > key) {
+                    setKey(f, i + 1, key(f, i));
+                    i--;
+                }
+                setKey(f, i + 1, key);
+                setNumKeys(f, numKeys(f) + 1);
+                pool.unpin(f);
+                return;
+            }
+
+            // Find the child that will have the new key
+            while (i >= 0 && key(f, i) > key) {
+                i--;
+            }
+            i++;
+
+            int c = pool.pin(child(f, i));
+            if (numKeys(c) == maxKeys) {
+                splitChild(f, i, c);
+                if (key(f, i) < key) {
+                    pool.unpin(c);
+                    c = pool.pin(child(f, i + 1));
+                }
+            }
+            pool.unpin(f);
+            f = c;
+        }
+    }
+
+    /**
+     * Split the full child c of node p at position index
+     */
+    private void splitChild(int p, int index, int c) {
+        int t = minDegree;
+        int nf = newNode(isLeaf(c));
+        setNumKeys(nf, t - 1);
+
+        // Copy the last (t-1) keys and last t children of c to the new node
+        for (int j = 0; j < t - 1; j++) {
+            setKey(nf, j, key(c, j + t));
+        }
+        if (!isLeaf(c)) {
+            for (int j = 0; j < t; j++) {
+                setChild(nf, j, child(c, j + t));
+            }
+        }
+        setNumKeys(c, t - 1);
+
+        // Make room in the parent and link the new node after c
+        int n = numKeys(p);
+        for (int j = n; j >= index + 1; j--) {
+            setChild(p, j + 1, child(p, j));
+        }
+        setChild(p, index + 1, pageOf(nf));
+        for (int j = n - 1; j >= index; j--) {
+            setKey(p, j + 1, key(p, j));
+        }
+        setKey(p, index, key(c, t - 1));
+        setNumKeys(p, n + 1);
+
+        pool.unpin(nf);
+    }
+
+    /**
+     * Delete a key from the B-tree
+     * @param key - key to delete
+     */
+    public void delete(int key) {
+        if (rootPage == NULL_PAGE) {
+            return;
+        }
+
+        delete(pool.pin(rootPage), key);
+
+        // If root has 0 keys, make its first child the new root
+        int root = pool.pin(rootPage);
+        if (numKeys(root) == 0) {
+            int oldRoot = rootPage;
+            rootPage = isLeaf(root) ? NULL_PAGE : child(root, 0);
+            pool.unpin(root);
+            freePage(oldRoot);
+        } else {
+            pool.unpin(root);
+        }
+    }
+
+    /**
+     * Delete a key from the subtree rooted at the pinned frame f
+     * Every recursive step of BTreeNode.delete is a tail call, so this
+     * walks down in a loop and releases each node's pin as it leaves it.
+     */
+    private void delete(int f, int key) {
+        int t = minDegree;
+        while (true) {
+            int idx = findKey(f, key);
+            int n = numKeys(f);
+
+            if (idx < n && key(f, idx) == key) {
+                if (isLeaf(f)) {
+                    removeFromLeaf(f, idx);
+                    pool.unpin(f);
+                    return;
+                }
+
+                // Case 1: Left child has at least minDegree keys
+                int left = pool.pin(child(f, idx));
+                if (numKeys(left) >= t) {
+                    int pred = lastKey(left);
+                    setKey(f, idx, pred);
+                    pool.unpin(f);
+                    f = left;
+                    key = pred;
+                    continue;
+                }
+
+                // Case 2: Right child has at least minDegree keys
+                int right = pool.pin(child(f, idx + 1));
+                if (numKeys(right) >= t) {
+                    int succ = firstKey(right);
+                    setKey(f, idx, succ);
+                    pool.unpin(left);
+                    pool.unpin(f);
+                    f = right;
+                    key = succ;
+                    continue;
+                }
+
+                // Case 3: Both children have minDegree-1 keys
+                pool.unpin(right);
+                pool.unpin(left);
+                merge(f, idx);
+                int merged = pool.pin(child(f, idx));
+                pool.unpin(f);
+                f = merged;
+                continue;
+            }
+
+            if (isLeaf(f)) {
+                // Key is not in the tree
+                pool.unpin(f);
+                return;
+            }
+
+            boolean flag = (idx == n);
+            if (keyCount(child(f, idx)) < t) {
+                fill(f, idx);
+            }
+
+            int next = (flag && idx > numKeys(f)) ? child(f, idx - 1) : child(f, idx);
+            int c = pool.pin(next);
+            pool.unpin(f);
+            f = c;
+        }
+    }
+
+    private int findKey(int f, int key) {
+        int idx = 0;
+        int n = numKeys(f);
+        while (idx < n && key(f, idx) < key) {
+            idx++;
+        }
+        return idx;
+    }
+
+    private int keyCount(int page) {
+        int f = pool.pin(page);
+        int n = numKeys(f);
+        pool.unpin(f);
+        return n;
+    }
+
+    private void removeFromLeaf(int f, int idx) {
+        int n = numKeys(f);
+        for (int i = idx + 1; i < n; i++) {
+            setKey(f, i - 1, key(f, i));
+        }
+        setNumKeys(f, n - 1);
+    }
+
+    /**
+     * Largest key in the subtree of the pinned frame f (predecessor lookup)
+     */
+    private int lastKey(int f) {
+        int cur = f;
+        while (!isLeaf(cur)) {
+            int next = pool.pin(child(cur, numKeys(cur)));
+            if (cur != f) pool.unpin(cur);
+            cur = next;
+        }
+        int result = key(cur, numKeys(cur) - 1);
+        if (cur != f) pool.unpin(cur);
+        return result;
+    }
+
+    /**
+     * Smallest key in the subtree of the pinned frame f (successor lookup)
+     */
+    private int firstKey(int f) {
+        int cur = f;
+        while (!isLeaf(cur)) {
+            int next = pool.pin(child(cur, 0));
+            if (cur != f) pool.unpin(cur);
+            cur = next;
+        }
+        int result = key(cur, 0);
+        if (cur != f) pool.unpin(cur);
+        return result;
+    }
+
+    /**
+     * Fill child idx of node f which has fewer than minDegree keys
+     */
+    private void fill(int f, int idx) {
+        int n = numKeys(f);
+        if (idx != 0 && keyCount(child(f, idx - 1)) >= minDegree) {
+            borrowFromPrev(f, idx);
+        } else if (idx != n && keyCount(child(f, idx + 1)) >= minDegree) {
+            borrowFromNext(f, idx);
+        } else if (idx != n) {
+            merge(f, idx);
+        } else {
+            merge(f, idx - 1);
+        }
+    }
+
+    private void borrowFromPrev(int f, int idx) {
+        int c = pool.pin(child(f, idx));
+        int s = pool.pin(child(f, idx - 1));
+        int cn = numKeys(c);
+        int sn = numKeys(s);
+
+        for (int i = cn - 1; i >= 0; i--) {
+            setKey(c, i + 1, key(c, i));
+        }
+        if (!isLeaf(c)) {
+            for (int i = cn; i >= 0; i--) {
+                setChild(c, i + 1, child(c, i));
+            }
+            setChild(c, 0, child(s, sn));
+        }
+        setKey(c, 0, key(f, idx - 1));
+        setKey(f, idx - 1, key(s, sn - 1));
+
+        setNumKeys(c, cn + 1);
+        setNumKeys(s, sn - 1);
+        pool.unpin(s);
+        pool.unpin(c);
+    }
+
+    private void borrowFromNext(int f, int idx) {
+        int c = pool.pin(child(f, idx));
+        int s = pool.pin(child(f, idx + 1));
+        int cn = numKeys(c);
+        int sn = numKeys(s);
+
+        setKey(c, cn, key(f, idx));
+        if (!isLeaf(c)) {
+            setChild(c, cn + 1, child(s, 0));
+        }
+        setKey(f, idx, key(s, 0));
+
+        for (int i = 1; i < sn; i++) {
+            setKey(s, i - 1, key(s, i));
+        }
+        if (!isLeaf(s)) {
+            for (int i = 1; i <= sn; i++) {
+                setChild(s, i - 1, child(s, i));
+            }
+        }
+
+        setNumKeys(c, cn + 1);
+        setNumKeys(s, sn - 1);
+        pool.unpin(s);
+        pool.unpin(c);
+    }
+
+    /**
+     * Merge child idx of node f with its right sibling and free the sibling page
+     */
+    private void merge(int f, int idx) {
+        int t = minDegree;
+        int siblingPage = child(f, idx + 1);
+        int c = pool.pin(child(f, idx));
+        int s = pool.pin(siblingPage);
+        int sn = numKeys(s);
+
+        setKey(c, t - 1, key(f, idx));
+        for (int i = 0; i < sn; i++) {
+            setKey(c, i + t, key(s, i));
+        }
+        if (!isLeaf(c)) {
+            for (int i = 0; i <= sn; i++) {
+                setChild(c, i + t, child(s, i));
+            }
+        }
+
+        int n = numKeys(f);
+        for (int i = idx + 1; i < n; i++) {
+            setKey(f, i - 1, key(f, i));
+        }
+        for (int i = idx + 2; i <= n; i++) {
+            setChild(f, i - 1, child(f, i));
+        }
+
+        setNumKeys(c, numKeys(c) + sn + 1);
+        setNumKeys(f, n - 1);
+        pool.unpin(s);
+        pool.unpin(c);
+        freePage(siblingPage);
+    }
+
+    /**
+     * Traverse and print the B-tree
+     */
+    public void traverse() {
+        if (rootPage != NULL_PAGE) {
+            traverse(rootPage);
+        }
+        System.out.println();
+    }
+
+    private void traverse(int page) {
+        int f = pool.pin(page);
+        int n = numKeys(f);
+        boolean leaf = isLeaf(f);
+        int i;
+        for (i = 0; i < n; i++) {
+            if (!leaf) {
+                traverse(child(f, i));
+            }
+            System.out.print(key(f, i) + " ");
+        }
+        if (!leaf) {
+            traverse(child(f, i));
+        }
+        pool.unpin(f);
+    }
+
+    /**
+     * Write back all dirty pages and the header, then force the mapping to disk
+     */
+    public void flush() {
+        pool.flush();
+        writeHeader();
+        for (MappedByteBuffer seg : segments) {
+            seg.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        segments.clear();
+        channel.close();
+    }
+
+    public long poolHits() { return pool.hits; }
+    public long poolMisses() { return pool.misses; }
+    public long poolEvictions() { return pool.evictions; }
+    public long poolWriteBacks() { return pool.writeBacks; }
+    public int pageCount() { return pageCount; }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Files.createTempFile("paged-btree", ".idx");
+        int n = 200_000;
+
+        System.out.println("=== PAGED B-TREE DEMONSTRATION ===");
+        System.out.println("minDegree 64 -> page size " + pageSizeFor(64) + " bytes, buffer pool of 64 frames");
+
+        try (PagedBTree tree = PagedBTree.open(file, 64, 64)) {
+            for (int i = 0; i < n; i++) {
+                tree.insert((int) ((i * 2654435761L) % n)); // permutation of 0..n-1
+            }
+            for (int i = 0; i < n; i += 2) {
+                tree.delete(i);
+            }
+            System.out.println("Pages in file: " + tree.pageCount());
+            System.out.println("Pool hits=" + tree.poolHits() + " misses=" + tree.poolMisses()
+                    + " evictions=" + tree.poolEvictions() + " writeBacks=" + tree.poolWriteBacks());
+        }
+
+        // Reopen from disk and verify the index survived
+        try (PagedBTree tree = PagedBTree.open(file, 64, 16)) {
+            int found = 0;
+            for (int i = 0; i < n; i++) {
+                if (tree.search(i) != (i % 2 == 1)) {
+                    throw new IllegalStateException("Mismatch for key " + i);
+                }
+                if (tree.search(i)) found++;
+            }
+            System.out.println("After reopen: " + found + " keys present (expected " + n / 2 + ")");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        System.out.println();
+        Path smallFile = Files.createTempFile("paged-btree", ".idx");
+        try (PagedBTree small = PagedBTree.open(smallFile, 3, 8)) {
+            int[] keys = {10, 20, 5, 6, 12, 30, 7, 17};
+            for (int key : keys) {
+                small.insert(key);
+            }
+            System.out.print("Small tree: ");
+            small.traverse();
+            small.delete(6);
+            small.delete(12);
+            System.out.print("After deleting 6 and 12: ");
+            small.traverse();
+        } finally {
+            Files.deleteIfExists(smallFile);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*Pairing Heap: a meldable min-heap with O(1) insert and meld, amortized O(log n) extractMin*/
+import java.util.Arrays;
+import java.util.Random;
+
+public class PairingHeap implements IntHeap {
+
+    //A heap-ordered multiway tree node; insert returns it as a handle for decreaseKey and delete
+    public static final class Node {
+        int value;
+        Node child;   // leftmost child
+        Node sibling; // next sibling to the right
+        Node prev;    // left sibling, or the parent for a leftmost child
+
+        Node(int value) {
+            this.value = value;
+        }
+
+        public int value() {
+            return value;
+        }
+    }
+
+    private Node root;
+    private int size;
+    private Node[] pairs = new Node[16]; // scratch space for the two-pass pairing in extractMin
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int peek() {
+        if (root == null) throw new IllegalStateException("Heap is empty");
+        return root.value;
+    }
+
+    public void insert(int value) {
+        add(value);
+    }
+
+    //Inserts value and returns its node, which stays valid until the value is extracted or deleted
+    public Node add(int value) { //Time Complexity: O(1)
+        Node node = new Node(value);
+        root = (root == null) ? node : link(root, node);
+        size++;
+        return node;
+    }
+
+    public int extractMin() { //Time Complexity: O(log n) amortized
+        if (root == null) throw new IllegalStateException("Heap is empty");
+        Node min = root;
+        root = pairUp(min.child);
+        min.child = null;
+        size--;
+        return min.value;
+    }
+
+    //Moves every element of other into this heap and leaves other empty
+    public void meld(PairingHeap other) { //Time Complexity: O(1)
+        if (other == this || other.root == null) {
+            return;
+        }
+        root = (root == null) ? other.root : link(root, other.root);
+        size += other.size;
+        other.root = null;
+        other.size = 0;
+    }
+
+    //Lowers the value of a node in this heap: its subtree is cut off and linked with the root
+    public void decreaseKey(Node node, int newValue) { //Time Complexity: O(1), amortized O(log n) in theory
+        if (newValue > node.value) throw new IllegalArgumentException("New value is greater than current value");
+        node.value = newValue;
+        if (node != root) {
+            cut(node);
+            root = link(root, node);
+        }
+    }
+
+    //Removes a node of this heap
+    public void delete(Node node) { //Time Complexity: O(log n) amortized
+        if (node == root) {
+            extractMin();
+            return;
+        }
+        cut(node);
+        Node children = pairUp(node.child);
+        node.child = null;
+        if (children != null) {
+            root = link(root, children);
+        }
+        size--;
+    }
+
+    //Makes a's root the parent of b's root (or the reverse); both must be roots without siblings
+    private static Node link(Node a, Node b) {
+        if (b.value < a.value) {
+            Node t = a;
+            a = b;
+            b = t;
+        }
+        b.prev = a;
+        b.sibling = a.child;
+        if (a.child != null) {
+            a.child.prev = b;
+        }
+        a.child = b;
+        return a;
+    }
+
+    //Detaches node (with its subtree) from its parent and siblings
+    private void cut(Node node) {
+        if (node.prev.child == node) {
+            node.prev.child = node.sibling;
+        } else {
+            node.prev.sibling = node.sibling;
+        }
+        if (node.sibling != null) {
+            node.sibling.prev = node.prev;
+        }
+        node.prev = null;
+        node.sibling = null;
+    }
+
+    //Two-pass pairing: link siblings in pairs left to right, then fold the pairs right to left
+    private Node pairUp(Node first) {
+        if (first == null) {
+            return null;
+        }
+        int n = 0;
+        while (first != null) {
+            Node a = first;
+            Node b = a.sibling;
+            first = (b == null) ? null : b.sibling;
+            a.prev = null;
+            a.sibling = null;
+            if (b != null) {
+                b.prev = null;
+                b.sibling = null;
+                a = link(a, b);
+            }
+            if (n == pairs.length) {
+                pairs = Arrays.copyOf(pairs, 2 * n);
+            }
+            pairs[n++] = a;
+        }
+        Node result = pairs[--n];
+        pairs[n] = null;
+        while (n > 0) {
+            result = link(pairs[--n], result);
+            pairs[n] = null;
+        }
+        return result;
+    }
+
+    public static void main(String[] args) {
+        PairingHeap left = new PairingHeap();
+        PairingHeap right = new PairingHeap();
+        left.insert(10);
+        left.insert(30);
+        Node twenty = left.add(20);
+        right.insert(5);
+        right.insert(25);
+        left.decreaseKey(twenty, 1);
+        left.meld(right);
+        System.out.println("After decreaseKey(20 -> 1) and meld: size = " + left.size() + ", right is empty: " + right.isEmpty());
+        System.out.print("Extraction order:");
+        while (!left.isEmpty()) {
+            System.out.print(" " + left.extractMin());
+        }
+        System.out.println();
+
+        // Rebalancing: merge 64 shards of 50K entries into one queue, then drain it
+        int shards = 64;
+        int perShard = 50_000;
+        Random random = new Random(42);
+        int[][] values = new int[shards][perShard];
+        for (int[] shard : values) {
+            for (int i = 0; i < perShard; i++) {
+                shard[i] = random.nextInt();
+            }
+        }
+        for (int round = 0; round < 3; round++) {
+            IntHeap[] binary = new IntHeap[shards];
+            PairingHeap[] pairing = new PairingHeap[shards];
+            for (int s = 0; s < shards; s++) {
+                binary[s] = new IntMinHeap();
+                pairing[s] = new PairingHeap();
+                for (int value : values[s]) {
+                    binary[s].insert(value);
+                    pairing[s].insert(value);
+                }
+            }
+
+            long start = System.nanoTime();
+            for (int s = 1; s < shards; s++) {
+                while (!binary[s].isEmpty()) {
+                    binary[0].insert(binary[s].extractMin());
+                }
+            }
+            long moveNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int s = 1; s < shards; s++) {
+                pairing[0].meld(pairing[s]);
+            }
+            long meldNs = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long binarySum = drain(binary[0]);
+            long binaryDrainNs = System.nanoTime() - start;
+            start = System.nanoTime();
+            long pairingSum = drain(pairing[0]);
+            long pairingDrainNs = System.nanoTime() - start;
+            if (binarySum != pairingSum) {
+                throw new IllegalStateException("Heaps disagree");
+            }
+            System.out.printf("merge %d shards: IntMinHeap element by element %,d us, PairingHeap.meld %,d us; "
+                    + "drain %,d: IntMinHeap %d ms, PairingHeap %d ms%n", shards, moveNs / 1000, meldNs / 1000,
+                    shards * perShard, binaryDrainNs / 1_000_000, pairingDrainNs / 1_000_000);
+        }
+    }
+
+    //Extracts everything, checking the order; returns a checksum
+    private static long drain(IntHeap heap) {
+        long sum = 0;
+        int previous = Integer.MIN_VALUE;
+        while (!heap.isEmpty()) {
+            int min = heap.extractMin();
+            if (min < previous) {
+                throw new IllegalStateException("Out of order");
+            }
+            previous = min;
+            sum += min;
+        }
+        return sum;
+    }
+}
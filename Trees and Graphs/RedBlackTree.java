@@ -1,3 +1,6 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 /**
  * Red-Black Tree Implementation in Java
  * 
@@ -9,6 +12,9 @@
  * 5. All leaf nodes (NULL nodes) are BLACK
  * 
  * These properties ensure the tree remains balanced with O(log n) operations.
+ * 
+ * Each key can also carry an int value (put/get), which lets the tree act
+ * as a sorted int map, e.g. the memtable of BufferedBTree.
  */
 
 public class RedBlackTree{
@@ -16,37 +22,56 @@ public class RedBlackTree{
     private static final boolean RED = true;
     private static final boolean BLACK = false;
 
+    /**
+     * Callback for in-order traversal of keys and their values
+     */
+    public interface EntryVisitor {
+        void visit(int key, int value);
+    }
+
     private class Node{
         int data;
-        Node left,right,
+        int value;
+        Node left,right;
         boolean color;
-        Node(int data){
+        Node(int data,int value){
             this.data=data;
+            this.value=value;
             this.color=RED;
             this.left=this.right=null; //New nodes are always inserted as RED initially
         }
     }
 
     private Node root;
+    private int size;
 
     public void insert(int data){
-        root=insertHelper(root,data);
+        put(data,0);
+    }
+
+    /**
+     * Insert key with a value, or replace the value if the key is present
+     */
+    public void put(int key,int value){
+        root=insertHelper(root,key,value);
         root.color=BLACK; // Root is always BLACK 
     }
 
-    private Node insertHelper(Node node,int data){
+    private Node insertHelper(Node node,int data,int value){
          // Standard BST insertion
         if(node==null){
-            return new Node(data);
+            size++;
+            return new Node(data,value);
         }
 
         if(data<node.data){
-            node.left=insertHelper(node.left,data);
+            node.left=insertHelper(node.left,data,value);
         }
         else if(data>node.data){
-            node.right=insertHelper(node.right,data);
+            node.right=insertHelper(node.right,data,value);
         }
-        else{ // duplicates are not allowed
+        else{ // duplicates are not allowed; keep the node, take the new value
+            node.value=value;
             return node;
         }
 
@@ -69,6 +94,55 @@ public class RedBlackTree{
         return node;
     }
 
+    /**
+     * SEARCH AND TRAVERSAL
+     */
+
+    public boolean search(int data){
+        return find(data)!=null;
+    }
+
+    /**
+     * Value stored for key, or missing if the key is not present
+     */
+    public int get(int key,int missing){
+        Node node=find(key);
+        return node==null ? missing : node.value;
+    }
+
+    private Node find(int data){
+        Node node=root;
+        while(node!=null && node.data!=data){
+            node = data<node.data ? node.left : node.right;
+        }
+        return node;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size==0;
+    }
+
+    /**
+     * Visit all keys in ascending order with their values (iterative, no recursion depth limit)
+     */
+    public void forEach(EntryVisitor visitor){
+        Deque<Node> stack=new ArrayDeque<>();
+        Node node=root;
+        while(node!=null || !stack.isEmpty()){
+            while(node!=null){
+                stack.push(node);
+                node=node.left;
+            }
+            node=stack.pop();
+            visitor.visit(node.data,node.value);
+            node=node.right;
+        }
+    }
+
     /**
      * ROTATION AND COLOR OPERATIONS
      */
@@ -0,0 +1,162 @@
+/*Bounded top-k collector: keeps the k largest ints seen in a fixed-capacity min-heap*/
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+
+//The heap root is the smallest of the current top k, i.e. the admission threshold. Once the heap is
+//full, a value <= threshold is rejected by one comparison against a field, without reading the
+//array, so most of a long stream costs O(1) per element and the whole stream O(n log k) with O(k)
+//memory. Collectors from different threads are combined with merge, which makes TopK usable as
+//the accumulator of a parallel IntStream.collect or (via collector) a Stream<Integer>.
+public class TopK implements IntConsumer {
+    private final int[] heap;
+    private int size;
+    private int threshold = Integer.MIN_VALUE; // heap[0] once full
+
+    public TopK(int k) {
+        if (k < 1) throw new IllegalArgumentException("k must be positive");
+        heap = new int[k];
+    }
+
+    public int k() {
+        return heap.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //Smallest value a new element must beat to get in (only meaningful once size() == k())
+    public int threshold() {
+        return threshold;
+    }
+
+    @Override
+    public void accept(int value) { //Time Complexity: O(1) when rejected, O(log k) when admitted
+        if (size < heap.length) {
+            siftUp(size++, value);
+            if (size == heap.length) {
+                threshold = heap[0];
+            }
+        } else if (value > threshold) {
+            siftDown(value); // the new value replaces the old minimum
+            threshold = heap[0];
+        }
+    }
+
+    //Adds other's elements to this collector (other is unchanged)
+    public TopK merge(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            accept(other.heap[i]);
+        }
+        return this;
+    }
+
+    //The top k, largest first
+    public int[] toSortedArray() {
+        int[] values = Arrays.copyOf(heap, size);
+        IntMinHeap.heapSort(values);
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            int t = values[i];
+            values[i] = values[j];
+            values[j] = t;
+        }
+        return values;
+    }
+
+    //The k largest values of a (possibly parallel) stream, largest first
+    public static int[] of(IntStream stream, int k) {
+        return stream.collect(() -> new TopK(k), TopK::accept, TopK::merge).toSortedArray();
+    }
+
+    //Collector for Stream<Integer>, e.g. scores.parallelStream().collect(TopK.collector(100))
+    public static Collector<Integer, TopK, int[]> collector(int k) {
+        return Collector.of(() -> new TopK(k), TopK::accept, TopK::merge, TopK::toSortedArray);
+    }
+
+    private void siftUp(int i, int value) {
+        while (i > 0) {
+            int p = (i - 1) / 2;
+            if (heap[p] <= value) {
+                break;
+            }
+            heap[i] = heap[p];
+            i = p;
+        }
+        heap[i] = value;
+    }
+
+    //Puts value at the root and moves it down (the heap is full)
+    private void siftDown(int value) {
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (value <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+
+    public static void main(String[] args) {
+        TopK leaderboard = new TopK(3);
+        for (int score : new int[]{40, 95, 12, 77, 95, 63, 88}) {
+            leaderboard.accept(score);
+        }
+        System.out.println("Top 3 of 40 95 12 77 95 63 88: " + Arrays.toString(leaderboard.toSortedArray()));
+        System.out.println("Top 3 of 1..10 via collector: " + Arrays.toString(IntStream.rangeClosed(1, 10).boxed().collect(collector(3))));
+
+        // Top 100 of 200M generated scores, never held in memory
+        long n = 200_000_000L;
+        int k = 100;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            int[] sequential = of(scores(n), k);
+            long sequentialMs = (System.nanoTime() - start) / 1_000_000;
+            start = System.nanoTime();
+            int[] parallel = of(scores(n).parallel(), k);
+            long parallelMs = (System.nanoTime() - start) / 1_000_000;
+            if (!Arrays.equals(sequential, parallel)) {
+                throw new IllegalStateException("Sequential and parallel results differ");
+            }
+            System.out.printf("top %d of %,d: sequential %d ms, parallel %d ms, best %d, 100th %d%n",
+                    k, n, sequentialMs, parallelMs, sequential[0], sequential[k - 1]);
+        }
+
+        // In-place heap sort versus Arrays.sort on 10M ints
+        int[] values = new Random(42).ints(10_000_000).toArray();
+        for (int round = 0; round < 3; round++) {
+            int[] a = values.clone();
+            int[] b = values.clone();
+            long start = System.nanoTime();
+            IntMinHeap.heapSort(a);
+            long heapMs = (System.nanoTime() - start) / 1_000_000;
+            start = System.nanoTime();
+            Arrays.sort(b);
+            long sortMs = (System.nanoTime() - start) / 1_000_000;
+            if (!Arrays.equals(a, b)) {
+                throw new IllegalStateException("heapSort is wrong");
+            }
+            System.out.printf("sort 10M ints in place: heapSort %d ms, Arrays.sort %d ms%n", heapMs, sortMs);
+        }
+    }
+
+    //Deterministic pseudo-random scores for index i (a stateless hash, so parallel streams see the same values)
+    private static IntStream scores(long n) {
+        return IntStream.range(0, (int) n).map(i -> {
+            int h = i * 0x9E3779B9;
+            h ^= h >>> 16;
+            h *= 0x85EBCA6B;
+            h ^= h >>> 13;
+            return h & Integer.MAX_VALUE;
+        });
+    }
+}
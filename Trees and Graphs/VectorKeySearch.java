@@ -0,0 +1,48 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD intra-node key search for BTree using the Vector API
+ *
+ * Keys in a node are sorted, so the lower bound of a key is simply the
+ * number of keys smaller than it. Each step loads one vector of keys,
+ * compares every lane against the search key at once and counts the true
+ * lanes; the scan stops at the first vector that is not all-smaller.
+ *
+ * Compile and run with: --add-modules jdk.incubator.vector
+ *   BTree tree = new BTree(128, VectorKeySearch.INSTANCE);
+ */
+public class VectorKeySearch implements BTree.KeySearch {
+
+    public static final VectorKeySearch INSTANCE = new VectorKeySearch();
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    private VectorKeySearch() {
+    }
+
+    @Override
+    public int lowerBound(int[] keys, int numKeys, int key) {
+        IntVector needle = IntVector.broadcast(SPECIES, key);
+        int upper = SPECIES.loopBound(numKeys);
+        int i = 0;
+
+        for (; i < upper; i += LANES) {
+            VectorMask<Integer> smaller = IntVector.fromArray(SPECIES, keys, i).compare(VectorOperators.LT, needle);
+            int count = smaller.trueCount();
+            if (count < LANES) {
+                return i + count;
+            }
+        }
+
+        // Scalar tail, still compare-and-count without branching on the keys
+        int count = 0;
+        for (; i < numKeys; i++) {
+            count += (keys[i] < key) ? 1 : 0;
+        }
+        return upper + count;
+    }
+}